@@ -1,9 +0,0 @@
-package org.kelemenattila.rectlife;
-
-/**
- *
- * @author Kelemen Attila
- */
-public interface DnsCombiner {
-    public double[] combineDns(double[] dns1, double[] dns2);
-}
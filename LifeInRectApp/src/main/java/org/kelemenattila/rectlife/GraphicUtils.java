@@ -5,6 +5,11 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import org.jtrim.utils.ExceptionHelper;
 
 /**
@@ -63,6 +68,27 @@ public final class GraphicUtils {
         }
     }
 
+    /**
+     * Returns a {@code TYPE_INT_ARGB} image backed by the pixels of the given
+     * view (without copying them).
+     */
+    public static BufferedImage createImage(EntityWorld.WorldView view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        int[] pixels = view.getPixels();
+
+        DirectColorModel colorModel = (DirectColorModel)ColorModel.getRGBdefault();
+        int[] masks = {
+            colorModel.getRedMask(),
+            colorModel.getGreenMask(),
+            colorModel.getBlueMask(),
+            colorModel.getAlphaMask()
+        };
+        DataBufferInt dataBuffer = new DataBufferInt(pixels, pixels.length);
+        WritableRaster raster = Raster.createPackedRaster(dataBuffer, width, height, width, masks, null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
     private GraphicUtils() {
         throw new AssertionError();
     }
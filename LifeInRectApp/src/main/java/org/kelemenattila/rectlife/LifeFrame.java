@@ -2,6 +2,7 @@ package org.kelemenattila.rectlife;
 
 import java.awt.GridLayout;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import javax.swing.JComponent;
@@ -87,10 +88,12 @@ public class LifeFrame extends javax.swing.JFrame {
     }
 
     private EntityWorld.WorldView createViewOfGraph(String caption, double minValue, double maxValue, double[] graph) {
-        BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_RGB);
+        BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB);
         GraphicUtils.drawGraph(image, minValue, maxValue, graph);
 
-        return new EntityWorld.WorldView(caption + " (max = " + maxValue + ", min = " + minValue + ")", image);
+        int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        return new EntityWorld.WorldView(caption + " (max = " + maxValue + ", min = " + minValue + ")",
+                image.getWidth(), image.getHeight(), pixels);
     }
 
     private void showGraphs(EntityWorld world, UpdateTaskExecutor executor) {
@@ -218,7 +221,7 @@ public class LifeFrame extends javax.swing.JFrame {
 
             for (int i = 0; i < view.length; i++) {
                 titles[i].setTitle(view[i].getCaption());
-                viewDisplays[i].setImage(view[i].getImage());
+                viewDisplays[i].setImage(GraphicUtils.createImage(view[i]));
                 panels[i].repaint();
             }
         }
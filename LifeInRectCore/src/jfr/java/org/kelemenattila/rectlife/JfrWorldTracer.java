@@ -0,0 +1,125 @@
+package org.kelemenattila.rectlife;
+
+import jdk.jfr.EventType;
+
+/**
+ * The {@link WorldTracer} recording Java Flight Recorder events. The events
+ * are only created if they are enabled in a running recording, otherwise the
+ * {@code begin} methods return {@code null} without allocating anything.
+ *
+ * @author Kelemen Attila
+ */
+final class JfrWorldTracer extends WorldTracer {
+    // Looking up the types fails if jdk.jfr is not available, so that the
+    // caller can fall back to not tracing.
+    private final EventType stepType;
+    private final EventType phaseType;
+    private final EventType graphsType;
+    private final EventType viewType;
+
+    public JfrWorldTracer() {
+        this.stepType = EventType.getEventType(WorldStepEvent.class);
+        this.phaseType = EventType.getEventType(StepPhaseEvent.class);
+        this.graphsType = EventType.getEventType(WorldGraphsEvent.class);
+        this.viewType = EventType.getEventType(WorldViewEvent.class);
+    }
+
+    @Override
+    public Object beginStep() {
+        if (!stepType.isEnabled()) {
+            return null;
+        }
+        WorldStepEvent event = new WorldStepEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endStep(Object stepTrace, long step, int width, int height,
+            long population, long attacks, long fightDeaths, long accidentDeaths, long births) {
+        if (stepTrace == null) {
+            return;
+        }
+
+        WorldStepEvent event = (WorldStepEvent)stepTrace;
+        event.step = step;
+        event.width = width;
+        event.height = height;
+        event.population = population;
+        event.attacks = attacks;
+        event.fightDeaths = fightDeaths;
+        event.accidentDeaths = accidentDeaths;
+        event.births = births;
+        event.commit();
+    }
+
+    @Override
+    public Object beginPhase() {
+        if (!phaseType.isEnabled()) {
+            return null;
+        }
+        StepPhaseEvent event = new StepPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPhase(Object phaseTrace, StepPhase phase, long step, int width, int height, long count) {
+        if (phaseTrace == null) {
+            return;
+        }
+
+        StepPhaseEvent event = (StepPhaseEvent)phaseTrace;
+        event.phase = phase.name();
+        event.step = step;
+        event.width = width;
+        event.height = height;
+        event.count = count;
+        event.commit();
+    }
+
+    @Override
+    public Object beginGraphs() {
+        if (!graphsType.isEnabled()) {
+            return null;
+        }
+        WorldGraphsEvent event = new WorldGraphsEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endGraphs(Object graphsTrace, int graphDetail, long entityCount) {
+        if (graphsTrace == null) {
+            return;
+        }
+
+        WorldGraphsEvent event = (WorldGraphsEvent)graphsTrace;
+        event.graphDetail = graphDetail;
+        event.entityCount = entityCount;
+        event.commit();
+    }
+
+    @Override
+    public Object beginView() {
+        if (!viewType.isEnabled()) {
+            return null;
+        }
+        WorldViewEvent event = new WorldViewEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endView(Object viewTrace, String viewName, int width, int height) {
+        if (viewTrace == null) {
+            return;
+        }
+
+        WorldViewEvent event = (WorldViewEvent)viewTrace;
+        event.view = viewName;
+        event.width = width;
+        event.height = height;
+        event.commit();
+    }
+}
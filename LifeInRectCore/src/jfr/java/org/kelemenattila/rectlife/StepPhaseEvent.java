@@ -0,0 +1,33 @@
+package org.kelemenattila.rectlife;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A single phase of a step of an {@link EntityWorld}.
+ *
+ * @author Kelemen Attila
+ */
+@Name("org.kelemenattila.rectlife.StepPhase")
+@Label("Step Phase")
+@Category("Life in Rect")
+final class StepPhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Step")
+    long step;
+
+    @Label("Board Width")
+    int width;
+
+    @Label("Board Height")
+    int height;
+
+    @Label("Count")
+    @Description("The number of attacks, fight deaths, accident deaths or births depending on the phase")
+    long count;
+}
@@ -0,0 +1,23 @@
+package org.kelemenattila.rectlife;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A calculation of the graphs of the behaviour of the population of an
+ * {@link EntityWorld}.
+ *
+ * @author Kelemen Attila
+ */
+@Name("org.kelemenattila.rectlife.WorldGraphs")
+@Label("World Graphs")
+@Category("Life in Rect")
+final class WorldGraphsEvent extends Event {
+    @Label("Graph Detail")
+    int graphDetail;
+
+    @Label("Entity Count")
+    long entityCount;
+}
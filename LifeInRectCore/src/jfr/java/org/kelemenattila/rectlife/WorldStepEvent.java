@@ -0,0 +1,42 @@
+package org.kelemenattila.rectlife;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A single step of an {@link EntityWorld}.
+ *
+ * @author Kelemen Attila
+ */
+@Name("org.kelemenattila.rectlife.WorldStep")
+@Label("World Step")
+@Category("Life in Rect")
+final class WorldStepEvent extends Event {
+    @Label("Step")
+    long step;
+
+    @Label("Board Width")
+    int width;
+
+    @Label("Board Height")
+    int height;
+
+    @Label("Population")
+    @Description("The number of entities at the end of the step")
+    long population;
+
+    @Label("Attacks")
+    long attacks;
+
+    @Label("Fight Deaths")
+    long fightDeaths;
+
+    @Label("Accident Deaths")
+    long accidentDeaths;
+
+    @Label("Births")
+    long births;
+}
@@ -0,0 +1,25 @@
+package org.kelemenattila.rectlife;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The rendering of a view of an {@link EntityWorld}.
+ *
+ * @author Kelemen Attila
+ */
+@Name("org.kelemenattila.rectlife.WorldView")
+@Label("World View")
+@Category("Life in Rect")
+final class WorldViewEvent extends Event {
+    @Label("View")
+    String view;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+}
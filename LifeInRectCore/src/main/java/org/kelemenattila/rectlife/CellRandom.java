@@ -0,0 +1,65 @@
+package org.kelemenattila.rectlife;
+
+import java.util.Random;
+
+/**
+ * A counter-based random number generator whose stream is determined by a
+ * world seed, a step, a phase and a cell index.
+ * <P>
+ * Since the stream of a cell does not depend on the numbers drawn for other
+ * cells, the cells can be processed in any order (and on any number of
+ * threads) and the result will still be the same for the same seed. A single
+ * instance can be reused for multiple cells by calling
+ * {@link #selectStream(long, int, int) selectStream}.
+ * <P>
+ * Instances of this class are not safe to be used by multiple threads
+ * concurrently. The {@link #setSeed(long) setSeed} method of {@code Random}
+ * has no effect on instances of this class.
+ *
+ * @author Kelemen Attila
+ */
+final class CellRandom extends Random {
+    private static final long serialVersionUID = 1L;
+
+    // The golden ratio, as used by SplitMix64.
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long worldSeed;
+    private long state;
+
+    public CellRandom(long worldSeed) {
+        super(0);
+        this.worldSeed = worldSeed;
+        this.state = mix(worldSeed);
+    }
+
+    /**
+     * Selects the stream of the given cell in the given step and phase. The
+     * subsequent random numbers will come from the selected stream.
+     */
+    public void selectStream(long step, int phase, int cellIndex) {
+        long key = mix(worldSeed + GAMMA * step);
+        key = mix(key + GAMMA * phase);
+        state = mix(key + GAMMA * cellIndex);
+    }
+
+    private static long mix(long value) {
+        // The finalizer of SplitMix64
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    protected int next(int bits) {
+        state += GAMMA;
+        return (int)(mix(state) >>> (64 - bits));
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        // The constructor of Random calls this method before our fields are
+        // initialized and the streams are only selected by selectStream.
+    }
+}
@@ -0,0 +1,24 @@
+package org.kelemenattila.rectlife;
+
+import java.util.Random;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public interface DnsCombiner {
+    /**
+     * Returns a new array containing the combination of the given genes. The
+     * arrays passed to this method must not be modified.
+     * <P>
+     * Every random decision must be made using the given {@code Random}
+     * object, so that the result is reproducible.
+     */
+    public double[] combineDns(double[] dns1, double[] dns2, Random random);
+
+    /**
+     * Combines genes stored in {@code float} precision. This method must
+     * combine the genes the same way as the {@code double} variant.
+     */
+    public float[] combineDns(float[] dns1, float[] dns2, Random random);
+}
@@ -0,0 +1,20 @@
+package org.kelemenattila.rectlife;
+
+/**
+ * Defines what the entities at the edges of the world see, attack and breed
+ * with beyond the edges.
+ *
+ * @author Kelemen Attila
+ */
+public enum EdgeMode {
+    /**
+     * The opposite edges of the world are adjacent, so every cell has eight
+     * neighbours.
+     */
+    TORUS,
+    /**
+     * The cells beyond the edges are always empty. Attacking them does
+     * nothing.
+     */
+    BOUNDED
+}
@@ -0,0 +1,492 @@
+package org.kelemenattila.rectlife;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import org.jtrim.utils.ExceptionHelper;
+import org.kelemenattila.rectlife.neural.GenePrecision;
+import org.kelemenattila.rectlife.neural.GenomeCodec;
+import org.kelemenattila.rectlife.neural.LinearNeuron;
+import org.kelemenattila.rectlife.neural.MLP;
+import org.kelemenattila.rectlife.neural.MLPTopology;
+import org.kelemenattila.rectlife.neural.SigmoidNeuron;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public final class Entity<EntityAction> {
+    public static final double MIN_APPEARANCE = -1.0;
+    public static final double MAX_APPEARANCE = 1.0;
+
+    private static final double LAMBDA = 1.0;
+    private static final double INITIAL_MIND_STATE = 1.0;
+
+    private static final int OUTPUT_OFFSET_APPEARANCE = 0;
+    private static final int OUTPUT_OFFSET_NEW_MIND_STATE = 1;
+    private static final int OUTPUT_OFFSET_ACTIONS = 2;
+    private static final int LEGACY_OUTPUT_COUNT = 13;
+
+    // The appearance output is only needed when the entity is created, so
+    // only the outputs starting from this index are calculated when thinking.
+    private static final int FIRST_THINK_OUTPUT = OUTPUT_OFFSET_NEW_MIND_STATE;
+
+    private final int inputCount;
+    private final MLPTopology topology;
+    // Exactly one of the gene arrays is not null depending on the precision
+    // of the topology. The outputs are calculated directly from the genes,
+    // so no MLP is ever created for an entity.
+    private final double[] genes;
+    private final float[] floatGenes;
+    private final double appearance;
+    private final EntityAction[] actions;
+    private final int thinkOutputCount;
+    private double mindState;
+    private long age;
+
+    public Entity(int inputCount, int neuronCount, EntityAction[] actions) {
+        this(createTopology(inputCount, neuronCount), actions);
+    }
+
+    /**
+     * Creates a new entity with random genes.
+     *
+     * @param topology the topology of the network of the entity. This must
+     *   be a topology returned by {@link #createTopology(int, int) createTopology}.
+     *   Entities sharing the same topology can think together in a
+     *   {@link BatchThinker}.
+     */
+    public Entity(MLPTopology topology, EntityAction[] actions) {
+        this(topology, actions, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Creates a new entity with genes chosen using the given {@code Random}
+     * object.
+     */
+    public Entity(MLPTopology topology, EntityAction[] actions, Random random) {
+        this(topology,
+                createRandomGenes(topology, random),
+                createRandomFloatGenes(topology, random),
+                actions.clone());
+    }
+
+    private Entity(MLPTopology topology, double[] genes, EntityAction[] actions) {
+        this(topology, genes, null, actions);
+    }
+
+    private Entity(MLPTopology topology, float[] floatGenes, EntityAction[] actions) {
+        this(topology, null, floatGenes, actions);
+    }
+
+    private Entity(
+            MLPTopology topology,
+            double[] genes,
+            float[] floatGenes,
+            EntityAction[] actions) {
+
+        ExceptionHelper.checkArgumentInRange(actions.length,
+                1, topology.getOutputCount() - OUTPUT_OFFSET_ACTIONS,
+                "actions.length");
+
+        this.inputCount = topology.getInputCount() - 1;
+        this.topology = topology;
+        this.actions = actions;
+        this.thinkOutputCount = OUTPUT_OFFSET_ACTIONS + actions.length - FIRST_THINK_OUTPUT;
+        this.age = 0;
+        this.mindState = INITIAL_MIND_STATE;
+        this.genes = genes;
+        this.floatGenes = floatGenes;
+        this.appearance = normalizeAppearance(calculateAppearanceOutput());
+    }
+
+    /**
+     * Creates the topology of the network of entities having the given number
+     * of inputs (not counting the mind state) and hidden neurons.
+     */
+    public static MLPTopology createTopology(int inputCount, int neuronCount) {
+        return createTopology(inputCount, neuronCount, NetworkSettings.DEFAULT);
+    }
+
+    /**
+     * Creates the topology of the network of entities having the given number
+     * of inputs (not counting the mind state) and hidden neurons, whose
+     * outputs are stored and calculated as specified by the given settings.
+     * <P>
+     * The network has enough outputs for 11 actions, regardless how many
+     * actions the entities actually have.
+     */
+    public static MLPTopology createTopology(int inputCount, int neuronCount, NetworkSettings settings) {
+        return createTopology(inputCount, neuronCount, LEGACY_OUTPUT_COUNT - OUTPUT_OFFSET_ACTIONS, settings);
+    }
+
+    /**
+     * Creates the topology of the network of entities having the given number
+     * of inputs (not counting the mind state), hidden neurons and actions.
+     * <P>
+     * Only the action outputs beyond {@code actionCount} are dropped compared
+     * to the topology created by
+     * {@link #createTopology(int, int, NetworkSettings)}. Since they are the
+     * last rows of the output layer, the genes of such a network are a
+     * prefix of the genes of the network having more action outputs.
+     */
+    public static MLPTopology createTopology(
+            int inputCount,
+            int neuronCount,
+            int actionCount,
+            NetworkSettings settings) {
+        ExceptionHelper.checkNotNullArgument(settings, "settings");
+        ExceptionHelper.checkArgumentInRange(inputCount, 0, Integer.MAX_VALUE, "inputCount");
+        ExceptionHelper.checkArgumentInRange(actionCount, 1, Integer.MAX_VALUE, "actionCount");
+
+        List<MLP.LayerDescription> layers = new ArrayList<>(2);
+        layers.add(new MLP.LayerDescription(new SigmoidNeuron.Factory(LAMBDA, settings.getSigmoidApproximation()), neuronCount));
+
+        // The input layer:
+        // 0: mind state (1.0 initially).
+        // 1..(1 + inputCount): Provided by the caller (e.g., appearance of neighbours).
+
+        // The output layer:
+        // 0: appearance (calculated with every input being 1.0)
+        // 1: new mind state (passed as an input in the next "generation")
+        // 2..(2 + ACTIONS.length): attack neighbour or self
+        layers.add(new MLP.LayerDescription(new LinearNeuron.Factory(1.0), OUTPUT_OFFSET_ACTIONS + actionCount));
+
+        return new MLPTopology(layers, inputCount + 1,
+                settings.getEvaluatorType(),
+                settings.getGenePrecision());
+    }
+
+    private static double randomGene(Random random) {
+        return random.nextDouble() * 2.0 - 1.0;
+    }
+
+    private static double[] createRandomGenes(MLPTopology topology, Random random) {
+        ExceptionHelper.checkNotNullArgument(random, "random");
+        if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+            return null;
+        }
+
+        double[] result = new double[topology.getGeneCount()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = randomGene(random);
+        }
+        return result;
+    }
+
+    private static float[] createRandomFloatGenes(MLPTopology topology, Random random) {
+        ExceptionHelper.checkNotNullArgument(random, "random");
+        if (topology.getGenePrecision() != GenePrecision.FLOAT) {
+            return null;
+        }
+
+        float[] result = new float[topology.getGeneCount()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (float)randomGene(random);
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the appearance output with every input - except for the
+     * last one - being 1.0.
+     */
+    private double calculateAppearanceOutput() {
+        if (floatGenes != null) {
+            return topology.evaluateUnitInputOutput(floatGenes, inputCount, OUTPUT_OFFSET_APPEARANCE);
+        }
+        else {
+            return topology.evaluateUnitInputOutput(genes, inputCount, OUTPUT_OFFSET_APPEARANCE);
+        }
+    }
+
+    /**
+     * Calculates the outputs needed to think starting with the output
+     * {@code FIRST_THINK_OUTPUT}.
+     */
+    private void evaluate(double[] inputs, int inputOffset, double[] outputs, int outputOffset) {
+        if (floatGenes != null) {
+            topology.evaluate(floatGenes, inputs, inputOffset, outputs, outputOffset, FIRST_THINK_OUTPUT, thinkOutputCount);
+        }
+        else {
+            topology.evaluate(genes, inputs, inputOffset, outputs, outputOffset, FIRST_THINK_OUTPUT, thinkOutputCount);
+        }
+    }
+
+    private static double normalizeAppearance(double value) {
+        double result = Math.signum(value) * (value - Math.floor(value));
+        // result is now between -1.0 and 1.0
+
+        result = (result + 1.0) / 2.0;
+        // result is now between 0.0 and 1.0
+
+        return result * (MAX_APPEARANCE - MIN_APPEARANCE) + MIN_APPEARANCE;
+    }
+
+    public double getAppearance() {
+        return appearance;
+    }
+
+    public double getAppearance(double minValue, double maxValue) {
+        double result = (appearance - MIN_APPEARANCE) / (MAX_APPEARANCE - MIN_APPEARANCE);
+        return result * (maxValue - minValue) + minValue;
+    }
+
+    public long getAge() {
+        return age;
+    }
+
+    private double[] getOutputs(double[] neighbours) {
+        ExceptionHelper.checkArgumentInRange(neighbours.length, inputCount, inputCount, "neighbours.length");
+
+        double[] inputs = new double[neighbours.length + 1];
+        System.arraycopy(neighbours, 0, inputs, 1, neighbours.length);
+        inputs[0] = mindState;
+
+        double[] outputs = new double[thinkOutputCount];
+        evaluate(inputs, 0, outputs, 0);
+        return outputs;
+    }
+
+    private EntityAction chooseActionBasedOnOutputs(double[] outputs) {
+        return chooseActionBasedOnOutputs(outputs, 0);
+    }
+
+    /**
+     * @param offset the index of the output {@code FIRST_THINK_OUTPUT} in
+     *   {@code outputs}
+     */
+    private EntityAction chooseActionBasedOnOutputs(double[] outputs, int offset) {
+        int actionsOffset = offset + OUTPUT_OFFSET_ACTIONS - FIRST_THINK_OUTPUT;
+
+        int chosenIndex = 0;
+        for (int i = 1; i < actions.length; i++) {
+            double actionWeight = outputs[actionsOffset + i];
+            if (actionWeight > outputs[actionsOffset + chosenIndex]) {
+                chosenIndex = i;
+            }
+        }
+
+        return actions[chosenIndex];
+    }
+
+    private EntityAction thinkFromOutputs(double[] outputs, int offset) {
+        mindState = outputs[offset + OUTPUT_OFFSET_NEW_MIND_STATE - FIRST_THINK_OUTPUT];
+        age++;
+
+        return chooseActionBasedOnOutputs(outputs, offset);
+    }
+
+    public EntityAction think(double[] neighbours) {
+        return thinkFromOutputs(getOutputs(neighbours), 0);
+    }
+
+    public EntityAction thinkWithoutAging(double[] neighbours) {
+        return chooseActionBasedOnOutputs(getOutputs(neighbours));
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeTo(ByteBuffer) writeTo} writes
+     * for entities of the given topology.
+     */
+    public static int getEncodedSize(MLPTopology topology) {
+        // mind state + age + genes
+        return 8 + 8 + GenomeCodec.getGenesSize(topology);
+    }
+
+    /**
+     * Writes the state of this entity (mind state, age and genes) to the
+     * given buffer. The topology is not written, it must be known by the
+     * reader.
+     *
+     * @see #readFrom(MLPTopology, Object[], ByteBuffer)
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putDouble(mindState);
+        buffer.putLong(age);
+        if (floatGenes != null) {
+            GenomeCodec.writeGenes(floatGenes, buffer);
+        }
+        else {
+            GenomeCodec.writeGenes(genes, buffer);
+        }
+    }
+
+    /**
+     * Reads an entity written by {@link #writeTo(ByteBuffer) writeTo}.
+     *
+     * @param topology the topology of the entity when it was written
+     */
+    public static <EntityAction> Entity<EntityAction> readFrom(
+            MLPTopology topology,
+            EntityAction[] actions,
+            ByteBuffer buffer) {
+        ExceptionHelper.checkNotNullArgument(topology, "topology");
+
+        double mindState = buffer.getDouble();
+        long age = buffer.getLong();
+
+        int geneCount = topology.getGeneCount();
+        Entity<EntityAction> result;
+        if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+            result = new Entity<>(topology, GenomeCodec.readFloatGenes(geneCount, buffer), actions.clone());
+        }
+        else {
+            result = new Entity<>(topology, GenomeCodec.readGenes(geneCount, buffer), actions.clone());
+        }
+
+        result.mindState = mindState;
+        result.age = age;
+        return result;
+    }
+
+    /**
+     * Creates a new entity from the genes of this entity and the given
+     * entity. Every random decision is made using the given {@code Random}
+     * object.
+     */
+    public Entity<EntityAction> breed(Entity<EntityAction> other, DnsCombiner combiner, Random random) {
+        if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+            float[] myGenes = this.floatGenes;
+            float[] otherGenes = other.floatGenes;
+            float[] combinedGenes = combiner.combineDns(myGenes, otherGenes, random);
+            if (combinedGenes.length != myGenes.length) {
+                throw new IllegalArgumentException(
+                        "Combing genes resulted in different species: "
+                        + Arrays.toString(combinedGenes));
+            }
+            return new Entity<>(topology, combinedGenes, actions);
+        }
+        else {
+            double[] myGenes = this.genes;
+            double[] otherGenes = other.genes;
+            double[] combinedGenes = combiner.combineDns(myGenes, otherGenes, random);
+            if (combinedGenes.length != myGenes.length) {
+                throw new IllegalArgumentException(
+                        "Combing genes resulted in different species: "
+                        + Arrays.toString(combinedGenes));
+            }
+            return new Entity<>(topology, combinedGenes, actions);
+        }
+    }
+
+    /**
+     * Lets many entities think at once. The inputs of the entities are
+     * collected into a single matrix and then the networks of the entities
+     * are evaluated one after another into a single output matrix, so that
+     * no temporary arrays need to be allocated for the individual entities.
+     * <P>
+     * The result of thinking in a batch is the same as if
+     * {@link Entity#think(double[]) think} was called for each entity in the
+     * order they were added to the batch.
+     * <P>
+     * Instances of this class are not thread-safe.
+     *
+     * @param <EntityAction> the type of the actions of the entities
+     */
+    public static final class BatchThinker<EntityAction> {
+        private final MLPTopology topology;
+        private final int inputCount;
+        private final int outputCount;
+
+        private final Entity<EntityAction>[] entities;
+        private final double[] inputs;
+        private final double[] outputs;
+        private final Object[] chosenActions;
+        private int size;
+
+        /**
+         * @param topology the topology of the entities to be added to this
+         *   batch
+         * @param capacity the maximum number of entities thinking in a
+         *   single batch
+         */
+        @SuppressWarnings("unchecked")
+        public BatchThinker(MLPTopology topology, int capacity) {
+            ExceptionHelper.checkNotNullArgument(topology, "topology");
+            ExceptionHelper.checkArgumentInRange(capacity, 1, Integer.MAX_VALUE, "capacity");
+
+            this.topology = topology;
+            this.inputCount = topology.getInputCount();
+            this.outputCount = topology.getOutputCount() - FIRST_THINK_OUTPUT;
+            this.entities = (Entity<EntityAction>[])new Entity<?>[capacity];
+            this.inputs = new double[capacity * inputCount];
+            this.outputs = new double[capacity * outputCount];
+            this.chosenActions = new Object[capacity];
+            this.size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isFull() {
+            return size >= entities.length;
+        }
+
+        /**
+         * Adds an entity to this batch with the given view of its
+         * neighbourhood. The {@code neighbours} array is copied, so it can be
+         * reused after this method returns.
+         */
+        public void add(Entity<EntityAction> entity, double[] neighbours) {
+            if (entity.topology != topology) {
+                throw new IllegalArgumentException("The entity has a different topology.");
+            }
+            ExceptionHelper.checkArgumentInRange(neighbours.length, inputCount - 1, inputCount - 1, "neighbours.length");
+            if (isFull()) {
+                throw new IllegalStateException("The batch is full.");
+            }
+
+            int inputOffset = size * inputCount;
+            inputs[inputOffset] = entity.mindState;
+            System.arraycopy(neighbours, 0, inputs, inputOffset + 1, neighbours.length);
+
+            entities[size] = entity;
+            size++;
+        }
+
+        /**
+         * Lets every entity of this batch think. The network of each entity
+         * is evaluated separately, in the order the entities were added. The
+         * chosen actions can be retrieved by {@link #getAction(int) getAction}.
+         */
+        public void think() {
+            int inputOffset = 0;
+            int outputOffset = 0;
+            for (int i = 0; i < size; i++) {
+                entities[i].evaluate(inputs, inputOffset, outputs, outputOffset);
+                inputOffset += inputCount;
+                outputOffset += outputCount;
+            }
+
+            outputOffset = 0;
+            for (int i = 0; i < size; i++) {
+                chosenActions[i] = entities[i].thinkFromOutputs(outputs, outputOffset);
+                outputOffset += outputCount;
+            }
+        }
+
+        /**
+         * Returns the action chosen by the entity at the given index in the
+         * last call to {@link #think() think}.
+         */
+        @SuppressWarnings("unchecked")
+        public EntityAction getAction(int index) {
+            ExceptionHelper.checkArgumentInRange(index, 0, size - 1, "index");
+            return (EntityAction)chosenActions[index];
+        }
+
+        /**
+         * Removes every entity from this batch, so that it can be reused.
+         */
+        public void clear() {
+            Arrays.fill(entities, 0, size, null);
+            Arrays.fill(chosenActions, 0, size, null);
+            size = 0;
+        }
+    }
+}
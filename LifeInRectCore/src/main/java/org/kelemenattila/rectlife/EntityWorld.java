@@ -0,0 +1,1422 @@
+package org.kelemenattila.rectlife;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import org.jtrim.utils.ExceptionHelper;
+import org.kelemenattila.rectlife.concurrent.AdaptiveThreshold;
+import org.kelemenattila.rectlife.concurrent.ForkJoinUtils;
+import org.kelemenattila.rectlife.concurrent.IntRangeTask;
+import org.kelemenattila.rectlife.concurrent.IntRectTask;
+import org.kelemenattila.rectlife.concurrent.RangeLoop;
+import org.kelemenattila.rectlife.concurrent.TileLoop;
+import org.kelemenattila.rectlife.neural.GenomeCodec;
+import org.kelemenattila.rectlife.neural.MLPTopology;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public final class EntityWorld {
+    private static final double DEFAULT_MUTATE_RATE = 0.001;
+    private static final int NEURON_COUNT = 10;
+    private static final double DEFAULT_DEFENDER_CHANCE_MULTIPLIER = 0.5;
+    private static final int MINIMUM_GRAPH_COUNT = 3;
+    private static final int THINK_BATCH_SIZE = 256;
+
+    private static final int POPULATION_MAGIC = 0x4C495250; // "LIRP"
+    private static final short POPULATION_FORMAT_VERSION = 1;
+
+    private static final StepPhase[] STEP_PHASES = StepPhase.values();
+    private static final WorldTracer TRACER = WorldTracer.getDefault();
+    private static final EntityAction.AttackPosition[] ATTACK_POSITIONS = EntityAction.AttackPosition.values();
+    private static final byte NO_ATTACK = -1;
+    private static final int NO_VICTIM = -1;
+    // The default size of the tiles processed by a single task in the
+    // phases only writing the cells they were given. A tile row of the padded
+    // arrays and its neighbours fit into a few cache lines.
+    private static final int DEFAULT_TILE_WIDTH = 64;
+    private static final int DEFAULT_TILE_HEIGHT = 16;
+
+    // The number of ghost rows and columns around the board. Breeding reads
+    // the cells at most two cells away from the bred cell.
+    private static final int HALO = 2;
+
+    // The coordinates of the 8 neighbours of a cell relative to the cell in
+    // the same order as the inputs of the entities.
+    private static final int[] NEIGHBOUR_DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] NEIGHBOUR_DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+    // Maps the bits of the 3x3 block around a cell (three bits of the row
+    // above, then three of the row of the cell and three of the row below)
+    // to a mask having bit i set if neighbour i is set in the block.
+    private static final byte[] NEIGHBOUR_MASKS = createNeighbourMasks();
+
+    // The phases of a step using random numbers. Each phase of each step
+    // uses a separate random stream for every cell.
+    private static final int PHASE_FILL = 0;
+    private static final int PHASE_FIGHT = 1;
+    private static final int PHASE_ACCIDENT = 2;
+    private static final int PHASE_BREED = 3;
+
+    private final ForkJoinPool algPool;
+    private final int width;
+    private final int height;
+    private final EdgeMode edgeMode;
+    private final MLPTopology topology;
+    // The cell arrays below are surrounded by HALO ghost rows and columns.
+    // The ghost cells are copies of the cells at the opposite edge (or are
+    // always empty in BOUNDED mode), so the neighbours of a cell can be
+    // accessed at constant offsets. The ghost cells are only updated by
+    // refreshHalo after the phases changing the state of the cells.
+    //
+    // The index of the cell (x, y) is (y + HALO) * stride + (x + HALO).
+    private final int stride;
+    private final int paddedHeight;
+    // The offsets of the 8 neighbours of a cell in the same order as the
+    // inputs of the entities.
+    private final int[] neighbourOffsets;
+    // The offsets of the cells attacked by an entity indexed by the ordinal
+    // of the attack position.
+    private final int[] attackOffsets;
+    private final Entity<EntityAction>[] board;
+    // The state of the cells read by the neighbours of the cells is also
+    // stored in primitive arrays (indexed the same way as the board), so that
+    // scanning the neighbourhood of a cell does not need to touch the
+    // entities. These arrays are only updated through setCell and clearCell.
+    //
+    // The bit planes below have a bit for each cell (including the ghost
+    // cells). The bits of a row start in a new word, so that tasks processing
+    // different rows never write the same word.
+    private final int planeWordsPerRow;
+    // The mask of the non-ghost cells in the words of a row of a plane.
+    private final long[] rowCellMasks;
+    // The cells containing an entity.
+    private final long[] occupancy;
+    // The cells containing an entity which can be a parent: Its age is
+    // greater than zero, that is, it was not born in the current step.
+    private final long[] parents;
+    private final double[] appearances;
+    private final long[] ages;
+    // The ordinal of the attack position chosen by the entity of each cell in
+    // the current step (or NO_ATTACK). Every element is overwritten in each
+    // step by the task thinking for that cell.
+    private final byte[] chosenAttacks;
+    // The index of the (non-ghost) cell dying in the fight at each cell in the
+    // current step (or NO_VICTIM). Every element is overwritten in each step
+    // by the task resolving the fight at that cell.
+    private final int[] fightVictims;
+    private final long seed;
+    // The number of steps started so far and the index of the phase of the
+    // current step to be run next (zero if no step is in progress). Only
+    // accessed by stepWorld and runNextPhase, which must not be called
+    // concurrently.
+    private long stepIndex;
+    private int nextPhaseIndex;
+    // The buffers needed by a task of a step. The threads of the pool are
+    // reused, so the buffers are only allocated in the first few steps.
+    private final ThreadLocal<StepBuffers> stepBuffers;
+    private final WorldMetrics metrics;
+    // The split thresholds of the phases processing rows, adapted to the
+    // cost of the rows measured in the previous steps.
+    private final AdaptiveThreshold victimRemovalThreshold;
+    private final AdaptiveThreshold accidentThreshold;
+    private final AdaptiveThreshold graphThreshold;
+    // The loops running the tasks of the phases. They are created once, so
+    // that a step does not allocate anything apart from the newborns.
+    private final TileLoop chooseActionsLoop;
+    private final TileLoop fightVictimsLoop;
+    private final RangeLoop victimRemovalLoop;
+    private final RangeLoop accidentLoop;
+    private final TileLoop breedLoop;
+    // The state of the current step read by the tasks of the loops above.
+    // Only written by the thread stepping the world before starting a loop.
+    private long currentStep;
+    private double currentDefChanceMul;
+    private double currentAccidentRate;
+    private DnsCombiner currentCombiner;
+    // The number of items counted by each phase in the current step. Only
+    // used when the step is traced.
+    private final long[] tracedPhaseCounts;
+    private volatile DnsCombiner geneCombiner;
+    private volatile double accidentRate;
+    private volatile double defenderChanceMultiplier;
+    private volatile int tileWidth;
+    private volatile int tileHeight;
+
+    public EntityWorld(ForkJoinPool algPool, int width, int height) {
+        this(algPool, width, height, NetworkSettings.DEFAULT);
+    }
+
+    /**
+     * Creates a new world filled with random entities whose networks are
+     * stored and evaluated as specified by the given settings. The seed of
+     * the world is chosen randomly.
+     */
+    public EntityWorld(ForkJoinPool algPool, int width, int height, NetworkSettings networkSettings) {
+        this(algPool, width, height, networkSettings, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Creates a new world filled with random entities, where every random
+     * decision is derived from the given seed. Worlds created with the same
+     * arguments go through the same states, regardless of the parallelism of
+     * the given pool. The cells beyond the edges of the world are empty (see
+     * {@link EdgeMode#BOUNDED}).
+     */
+    public EntityWorld(ForkJoinPool algPool, int width, int height, NetworkSettings networkSettings, long seed) {
+        this(algPool, width, height, networkSettings, seed, EdgeMode.BOUNDED);
+    }
+
+    /**
+     * Creates a new world filled with random entities, where every random
+     * decision is derived from the given seed and the edges of the world
+     * behave as specified by the given {@code EdgeMode}.
+     */
+    public EntityWorld(
+            ForkJoinPool algPool,
+            int width,
+            int height,
+            NetworkSettings networkSettings,
+            long seed,
+            EdgeMode edgeMode) {
+        ExceptionHelper.checkNotNullArgument(networkSettings, "networkSettings");
+        ExceptionHelper.checkNotNullArgument(algPool, "algPool");
+        ExceptionHelper.checkNotNullArgument(edgeMode, "edgeMode");
+        ExceptionHelper.checkArgumentInRange(width, 1, Integer.MAX_VALUE - 2 * HALO, "width");
+        ExceptionHelper.checkArgumentInRange(height, 1, Integer.MAX_VALUE - 2 * HALO, "height");
+
+        this.algPool = algPool;
+        this.width = width;
+        this.height = height;
+        this.edgeMode = edgeMode;
+        this.stride = width + 2 * HALO;
+        this.paddedHeight = height + 2 * HALO;
+        this.neighbourOffsets = createNeighbourOffsets(stride);
+        this.attackOffsets = createAttackOffsets(stride);
+
+        int paddedSize = stride * paddedHeight;
+        this.board = createBoard(paddedSize);
+        this.planeWordsPerRow = (stride + 63) >>> 6;
+        this.rowCellMasks = createRowCellMasks(planeWordsPerRow, width);
+        this.occupancy = new long[planeWordsPerRow * paddedHeight];
+        this.parents = new long[planeWordsPerRow * paddedHeight];
+        this.appearances = new double[paddedSize];
+        this.ages = new long[paddedSize];
+
+        this.topology = Entity.createTopology(8, NEURON_COUNT, EntityAction.values().length, networkSettings);
+        this.chosenAttacks = new byte[paddedSize];
+        this.fightVictims = new int[paddedSize];
+        // The ghost cells keep these values in BOUNDED mode.
+        Arrays.fill(chosenAttacks, NO_ATTACK);
+        Arrays.fill(fightVictims, NO_VICTIM);
+        this.geneCombiner = new StandardGeneticCombiner(DEFAULT_MUTATE_RATE);
+        this.accidentRate = 0.001;
+        this.defenderChanceMultiplier = DEFAULT_DEFENDER_CHANCE_MULTIPLIER;
+        this.tileWidth = DEFAULT_TILE_WIDTH;
+        this.tileHeight = DEFAULT_TILE_HEIGHT;
+        this.seed = seed;
+        this.stepIndex = 0;
+        this.nextPhaseIndex = 0;
+        this.stepBuffers = new ThreadLocal<StepBuffers>() {
+            @Override
+            protected StepBuffers initialValue() {
+                return new StepBuffers(EntityWorld.this.topology, EntityWorld.this.seed);
+            }
+        };
+        this.metrics = new WorldMetrics();
+        this.victimRemovalThreshold = new AdaptiveThreshold();
+        this.accidentThreshold = new AdaptiveThreshold();
+        this.graphThreshold = new AdaptiveThreshold();
+        this.chooseActionsLoop = new TileLoop(algPool, new IntRectTask() {
+            @Override
+            public void doWork(int startX, int startY, int endX, int endY) {
+                chooseActions(startX, startY, endX, endY);
+            }
+        });
+        this.fightVictimsLoop = new TileLoop(algPool, new IntRectTask() {
+            @Override
+            public void doWork(int startX, int startY, int endX, int endY) {
+                chooseFightVictims(startX, startY, endX, endY);
+            }
+        });
+        this.victimRemovalLoop = new RangeLoop(algPool, new IntRangeTask() {
+            @Override
+            public void doWork(int startInclusive, int endExclusive) {
+                removeFightVictims(startInclusive, endExclusive);
+            }
+        });
+        this.accidentLoop = new RangeLoop(algPool, new IntRangeTask() {
+            @Override
+            public void doWork(int startInclusive, int endExclusive) {
+                resolveAccidents(startInclusive, endExclusive);
+            }
+        });
+        this.breedLoop = new TileLoop(algPool, new IntRectTask() {
+            @Override
+            public void doWork(int startWord, int startY, int endWord, int endY) {
+                breedPopulation(startWord, startY, endWord, endY);
+            }
+        });
+        this.tracedPhaseCounts = new long[STEP_PHASES.length];
+
+        fillBoard(topology);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public EdgeMode getEdgeMode() {
+        return edgeMode;
+    }
+
+    public void setDefenderChanceMultiplier(double defenderChanceMultiplier) {
+        this.defenderChanceMultiplier = defenderChanceMultiplier;
+    }
+
+    public void setAccidentRate(double accidentRate) {
+        this.accidentRate = accidentRate;
+    }
+
+    /**
+     * Sets the size of the tiles of the board processed by a single task in
+     * the phases of the later steps. Breeding rounds the width of the tiles
+     * up to a multiple of 64 cells. The tile size does not affect the
+     * outcome of the steps, only their performance. The default tiles are
+     * 64 cells wide and 16 cells high.
+     */
+    public void setTileSize(int tileWidth, int tileHeight) {
+        ExceptionHelper.checkArgumentInRange(tileWidth, 1, Integer.MAX_VALUE, "tileWidth");
+        ExceptionHelper.checkArgumentInRange(tileHeight, 1, Integer.MAX_VALUE, "tileHeight");
+
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    private static int[] createNeighbourOffsets(int stride) {
+        int[] result = new int[NEIGHBOUR_DX.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = NEIGHBOUR_DY[i] * stride + NEIGHBOUR_DX[i];
+        }
+        return result;
+    }
+
+    private static byte[] createNeighbourMasks() {
+        byte[] result = new byte[1 << 9];
+        for (int block = 0; block < result.length; block++) {
+            int mask = 0;
+            for (int i = 0; i < NEIGHBOUR_DX.length; i++) {
+                int blockBit = 3 * (NEIGHBOUR_DY[i] + 1) + (NEIGHBOUR_DX[i] + 1);
+                mask |= ((block >>> blockBit) & 1) << i;
+            }
+            result[block] = (byte)mask;
+        }
+        return result;
+    }
+
+    private static long[] createRowCellMasks(int wordsPerRow, int width) {
+        long[] result = new long[wordsPerRow];
+        for (int x = 0; x < width; x++) {
+            int paddedX = x + HALO;
+            result[paddedX >>> 6] |= 1L << paddedX;
+        }
+        return result;
+    }
+
+    private static int[] createAttackOffsets(int stride) {
+        int[] result = new int[ATTACK_POSITIONS.length];
+        for (EntityAction.AttackPosition attackPos: ATTACK_POSITIONS) {
+            result[attackPos.ordinal()] = attackPos.getDy() * stride + attackPos.getDx();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the given cell in the cell arrays. The coordinates
+     * can point to a ghost cell.
+     */
+    private int getCellIndex(int x, int y) {
+        return (y + HALO) * stride + (x + HALO);
+    }
+
+    /**
+     * Returns the index used to select the random stream of the given cell.
+     * This does not depend on the layout of the cell arrays.
+     */
+    private int getStreamIndex(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Returns the index of the cell whose copy is the given (possibly ghost)
+     * cell. This is only needed in TORUS mode because in BOUNDED mode the
+     * ghost cells are always empty.
+     */
+    private int getOriginalCellIndex(int cellIndex) {
+        int x = cellIndex % stride - HALO;
+        int y = cellIndex / stride - HALO;
+        return getCellIndex(wrap(x, width), wrap(y, height));
+    }
+
+    private static int wrap(int coordinate, int size) {
+        int result = coordinate % size;
+        return result >= 0 ? result : result + size;
+    }
+
+    private void setBit(long[] plane, int x, int y, boolean value) {
+        int paddedX = x + HALO;
+        int wordIndex = (y + HALO) * planeWordsPerRow + (paddedX >>> 6);
+        if (value) {
+            plane[wordIndex] |= 1L << paddedX;
+        }
+        else {
+            plane[wordIndex] &= ~(1L << paddedX);
+        }
+    }
+
+    private void setCell(int x, int y, Entity<EntityAction> entity) {
+        int index = getCellIndex(x, y);
+        board[index] = entity;
+        appearances[index] = entity.getAppearance();
+        ages[index] = entity.getAge();
+        setBit(occupancy, x, y, true);
+        setBit(parents, x, y, entity.getAge() > 0);
+    }
+
+    private void clearCell(int x, int y) {
+        int index = getCellIndex(x, y);
+        board[index] = null;
+        appearances[index] = 0.0;
+        ages[index] = 0;
+        setBit(occupancy, x, y, false);
+        setBit(parents, x, y, false);
+    }
+
+    // The methods below are only visible for the tests, which set up the
+    // state of the cells between the phases of a step.
+
+    void removeEntity(int x, int y) {
+        ExceptionHelper.checkArgumentInRange(x, 0, width - 1, "x");
+        ExceptionHelper.checkArgumentInRange(y, 0, height - 1, "y");
+
+        clearCell(x, y);
+        refreshCellHalo();
+    }
+
+    boolean hasEntity(int x, int y) {
+        ExceptionHelper.checkArgumentInRange(x, 0, width - 1, "x");
+        ExceptionHelper.checkArgumentInRange(y, 0, height - 1, "y");
+
+        return board[getCellIndex(x, y)] != null;
+    }
+
+    /**
+     * Stores the inputs the entity at the given cell receives about its
+     * neighbours when thinking.
+     */
+    void getNeighbourAppearances(int x, int y, double[] neighbours) {
+        ExceptionHelper.checkArgumentInRange(x, 0, width - 1, "x");
+        ExceptionHelper.checkArgumentInRange(y, 0, height - 1, "y");
+        ExceptionHelper.checkArgumentInRange(neighbours.length,
+                NEIGHBOUR_DX.length, NEIGHBOUR_DX.length, "neighbours.length");
+
+        getNeighbourAppearances(getCellIndex(x, y), neighbours);
+    }
+
+    /**
+     * Overwrites the attack chosen by the entity at the given cell in the
+     * current step. The attack can be {@code null}, if the entity does not
+     * attack.
+     */
+    void setChosenAttack(int x, int y, EntityAction.AttackPosition attackPos) {
+        ExceptionHelper.checkArgumentInRange(x, 0, width - 1, "x");
+        ExceptionHelper.checkArgumentInRange(y, 0, height - 1, "y");
+
+        chosenAttacks[getCellIndex(x, y)] = attackPos != null ? (byte)attackPos.ordinal() : NO_ATTACK;
+        refreshHalo(chosenAttacks);
+    }
+
+    /**
+     * Returns {@code true} if the given cell contains an entity. The
+     * coordinates can point to a ghost cell.
+     */
+    private boolean isOccupied(int x, int y) {
+        int paddedX = x + HALO;
+        return (occupancy[(y + HALO) * planeWordsPerRow + (paddedX >>> 6)] & (1L << paddedX)) != 0;
+    }
+
+    /**
+     * Returns the mask of the neighbours of the given cell set in the given
+     * plane. Bit {@code i} of the result is set if neighbour {@code i} is
+     * set. The coordinates can point to a ghost cell but not beyond the first
+     * ghost row and column.
+     */
+    private int getNeighbourMask(long[] plane, int x, int y) {
+        int firstX = x + HALO - 1;
+        int rowStart = (y + HALO - 1) * planeWordsPerRow;
+        int block = getThreeBits(plane, rowStart, firstX);
+        block |= getThreeBits(plane, rowStart + planeWordsPerRow, firstX) << 3;
+        block |= getThreeBits(plane, rowStart + 2 * planeWordsPerRow, firstX) << 6;
+        return NEIGHBOUR_MASKS[block] & 0xFF;
+    }
+
+    private static int getThreeBits(long[] plane, int rowStart, int firstX) {
+        int wordIndex = rowStart + (firstX >>> 6);
+        int shift = firstX & 63;
+        long bits = plane[wordIndex] >>> shift;
+        if (shift > 64 - 3) {
+            bits |= plane[wordIndex + 1] << (64 - shift);
+        }
+        return (int)bits & 7;
+    }
+
+    /**
+     * Copies the cells at the edges of the given cell array to the ghost
+     * cells at the opposite edges.
+     */
+    private void refreshHalo(Object cells) {
+        if (edgeMode != EdgeMode.TORUS) {
+            return;
+        }
+
+        for (int paddedY = HALO; paddedY < HALO + height; paddedY++) {
+            int rowStart = paddedY * stride;
+            for (int ghostX = 0; ghostX < HALO; ghostX++) {
+                int leftGhostX = ghostX;
+                int rightGhostX = HALO + width + ghostX;
+                int leftSourceX = HALO + wrap(leftGhostX - HALO, width);
+                int rightSourceX = HALO + wrap(rightGhostX - HALO, width);
+                System.arraycopy(cells, rowStart + leftSourceX, cells, rowStart + leftGhostX, 1);
+                System.arraycopy(cells, rowStart + rightSourceX, cells, rowStart + rightGhostX, 1);
+            }
+        }
+
+        for (int ghostY = 0; ghostY < HALO; ghostY++) {
+            int topGhostY = ghostY;
+            int bottomGhostY = HALO + height + ghostY;
+            int topSourceY = HALO + wrap(topGhostY - HALO, height);
+            int bottomSourceY = HALO + wrap(bottomGhostY - HALO, height);
+            System.arraycopy(cells, topSourceY * stride, cells, topGhostY * stride, stride);
+            System.arraycopy(cells, bottomSourceY * stride, cells, bottomGhostY * stride, stride);
+        }
+    }
+
+    private void refreshPlaneHalo(long[] plane) {
+        if (edgeMode != EdgeMode.TORUS) {
+            return;
+        }
+
+        for (int paddedY = HALO; paddedY < HALO + height; paddedY++) {
+            for (int ghostX = 0; ghostX < HALO; ghostX++) {
+                int rightGhostX = HALO + width + ghostX;
+                copyPlaneBit(plane, paddedY, HALO + wrap(ghostX - HALO, width), ghostX);
+                copyPlaneBit(plane, paddedY, HALO + wrap(rightGhostX - HALO, width), rightGhostX);
+            }
+        }
+
+        for (int ghostY = 0; ghostY < HALO; ghostY++) {
+            int bottomGhostY = HALO + height + ghostY;
+            copyPlaneRow(plane, HALO + wrap(ghostY - HALO, height), ghostY);
+            copyPlaneRow(plane, HALO + wrap(bottomGhostY - HALO, height), bottomGhostY);
+        }
+    }
+
+    private void copyPlaneBit(long[] plane, int paddedY, int sourceX, int destX) {
+        int rowStart = paddedY * planeWordsPerRow;
+        long bit = (plane[rowStart + (sourceX >>> 6)] >>> sourceX) & 1L;
+        int destWord = rowStart + (destX >>> 6);
+        plane[destWord] = (plane[destWord] & ~(1L << destX)) | (bit << destX);
+    }
+
+    private void copyPlaneRow(long[] plane, int sourceY, int destY) {
+        System.arraycopy(plane, sourceY * planeWordsPerRow,
+                plane, destY * planeWordsPerRow,
+                planeWordsPerRow);
+    }
+
+    /**
+     * Updates the ghost cells of the state of the cells after they were
+     * changed.
+     */
+    private void refreshCellHalo() {
+        refreshHalo(board);
+        refreshHalo(appearances);
+        refreshHalo(ages);
+        refreshPlaneHalo(occupancy);
+        refreshPlaneHalo(parents);
+    }
+
+    private void fillBoard(MLPTopology topology) {
+        EntityAction[] actions = EntityAction.values();
+        CellRandom random = new CellRandom(seed);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                random.selectStream(0, PHASE_FILL, getStreamIndex(x, y));
+                setCell(x, y, new Entity<>(topology, actions, random));
+            }
+        }
+        refreshCellHalo();
+        metrics.setPopulation(countPopulation());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Entity<EntityAction>[] createBoard(int size) {
+        return (Entity<EntityAction>[])new Entity<?>[size];
+    }
+
+    public void setMutateRate(double newRate) {
+        geneCombiner = new StandardGeneticCombiner(newRate);
+    }
+
+    private void getNeighbourAppearances(int cellIndex, double[] neighbours) {
+        double baseAppearance = appearances[cellIndex];
+        for (int i = 0; i < neighbourOffsets.length; i++) {
+            int neighbourIndex = cellIndex + neighbourOffsets[i];
+            neighbours[i] = board[neighbourIndex] != null
+                    ? appearances[neighbourIndex] - baseAppearance
+                    : 0.0;
+        }
+    }
+
+    private void chooseActions() {
+        chooseActionsLoop.run(width, height, tileWidth, tileHeight);
+
+        // Every entity has aged, so every one of them can be a parent now.
+        System.arraycopy(occupancy, 0, parents, 0, occupancy.length);
+    }
+
+    private void chooseActions(int startX, int startY, int endX, int endY) {
+        StepBuffers buffers = stepBuffers.get();
+        Entity.BatchThinker<EntityAction> thinkBatch = buffers.thinkBatch;
+        int[] thinkBatchPositions = buffers.thinkBatchPositions;
+        double[] neighbours = buffers.neighbourAppearances;
+        // Discard the entities left behind by a previously failed task.
+        thinkBatch.clear();
+
+        int attackCount = 0;
+        for (int y = startY; y < endY; y++) {
+            int index = getCellIndex(startX, y);
+            for (int x = startX; x < endX; x++, index++) {
+                Entity<EntityAction> entity = board[index];
+                if (entity != null) {
+                    getNeighbourAppearances(index, neighbours);
+
+                    // Every entity ages by one when thinking.
+                    ages[index]++;
+
+                    thinkBatchPositions[thinkBatch.size()] = index;
+                    thinkBatch.add(entity, neighbours);
+                    if (thinkBatch.isFull()) {
+                        attackCount += thinkInBatch(thinkBatch, thinkBatchPositions, buffers.actionCounts);
+                    }
+                }
+                else {
+                    chosenAttacks[index] = NO_ATTACK;
+                }
+            }
+        }
+        attackCount += thinkInBatch(thinkBatch, thinkBatchPositions, buffers.actionCounts);
+        metrics.addAttacks(attackCount);
+        metrics.addActions(buffers.actionCounts);
+    }
+
+    /**
+     * Lets the entities of the batch think and returns the number of entities
+     * which chose to attack. The chosen actions are counted in
+     * {@code actionCounts} indexed by their ordinal.
+     */
+    private int thinkInBatch(
+            Entity.BatchThinker<EntityAction> thinkBatch,
+            int[] thinkBatchPositions,
+            int[] actionCounts) {
+        thinkBatch.think();
+
+        int attackCount = 0;
+        int batchSize = thinkBatch.size();
+        for (int i = 0; i < batchSize; i++) {
+            EntityAction action = thinkBatch.getAction(i);
+            actionCounts[action.ordinal()]++;
+
+            EntityAction.AttackPosition attackPos = action.getAction();
+            if (attackPos != null) {
+                chosenAttacks[thinkBatchPositions[i]] = (byte)attackPos.ordinal();
+                attackCount++;
+            }
+            else {
+                chosenAttacks[thinkBatchPositions[i]] = NO_ATTACK;
+            }
+        }
+
+        thinkBatch.clear();
+        return attackCount;
+    }
+
+    /**
+     * Returns the index of the (possibly ghost) cell attacked by the entity at
+     * the given cell or -1 if the entity does not attack.
+     */
+    private int getAttackedCell(int cellIndex) {
+        byte attack = chosenAttacks[cellIndex];
+        if (attack == NO_ATTACK) {
+            return -1;
+        }
+        return cellIndex + attackOffsets[attack];
+    }
+
+    private void chooseFightVictims(int startX, int startY, int endX, int endY) {
+        long step = currentStep;
+        double defChanceMul = currentDefChanceMul;
+        StepBuffers buffers = stepBuffers.get();
+        CellRandom random = buffers.random;
+        // The cell index of the attackers of the current defender
+        int[] attackers = buffers.attackers;
+
+        for (int y = startY; y < endY; y++) {
+            int defenderIndex = getCellIndex(startX, y);
+            for (int x = startX; x < endX; x++, defenderIndex++) {
+                int attackerCount = 0;
+                for (int i = 0; i < attackOffsets.length; i++) {
+                    // The ghost cells never attack in BOUNDED mode.
+                    int attackerIndex = defenderIndex - attackOffsets[i];
+                    if (chosenAttacks[attackerIndex] == i) {
+                        attackers[attackerCount++] = attackerIndex;
+                    }
+                }
+
+                int victim = NO_VICTIM;
+                if (attackerCount > 0) {
+                    random.selectStream(step, PHASE_FIGHT, getStreamIndex(x, y));
+
+                    double count = attackerCount + 1;
+                    // The defender has 1/participant chance to remain alive
+                    // this chance is multiplied by defenderChanceToDie
+                    // reducing its chance of survival (since it is expected to
+                    // be within [0.0, 1.0]).
+                    double defenderChanceToDie = 1.0 - defChanceMul / count;
+                    if (random.nextDouble() < defenderChanceToDie) {
+                        victim = defenderIndex;
+                    }
+                    else {
+                        victim = getOriginalCellIndex(attackers[random.nextInt(attackerCount)]);
+                    }
+                }
+                fightVictims[defenderIndex] = victim;
+            }
+        }
+    }
+
+    private void removeFightVictims(int startY, int endY) {
+        int defenderDeaths = 0;
+        int attackerDeaths = 0;
+        for (int y = startY; y < endY; y++) {
+            int index = getCellIndex(0, y);
+            for (int x = 0; x < width; x++, index++) {
+                // An entity can only die in the fight at its own cell or in
+                // the fight at the cell it attacked. There are no fights at
+                // the ghost cells in BOUNDED mode. The fight at an empty
+                // cell might choose the empty cell as its victim.
+                if (board[index] == null) {
+                    continue;
+                }
+
+                if (fightVictims[index] == index) {
+                    clearCell(x, y);
+                    defenderDeaths++;
+                    continue;
+                }
+
+                int attackedCell = getAttackedCell(index);
+                if (attackedCell >= 0 && fightVictims[attackedCell] == index) {
+                    clearCell(x, y);
+                    attackerDeaths++;
+                }
+            }
+        }
+        metrics.addFightDeaths(defenderDeaths, attackerDeaths);
+    }
+
+    /**
+     * Resolves the fights in two phases, both of them running in parallel:
+     * First the victim of every fight is chosen, then every cell checks if
+     * its entity was chosen as a victim in the fight at its own cell or at
+     * the cell it attacked. Each phase only writes the cells it was given,
+     * so no synchronization is needed between the tasks.
+     */
+    private void resolveFight() {
+        currentDefChanceMul = defenderChanceMultiplier;
+
+        fightVictimsLoop.run(width, height, tileWidth, tileHeight);
+        refreshHalo(fightVictims);
+
+        // Removing the victims clears bits of the occupancy planes, so the
+        // tasks must not share words of the planes.
+        victimRemovalLoop.run(0, height, victimRemovalThreshold);
+    }
+
+    /**
+     * Returns the index of the neighbour having the given rank among the
+     * neighbours set in the given mask.
+     */
+    private static int selectNeighbour(int neighbourMask, int rank) {
+        int remaining = neighbourMask;
+        for (int i = 0; i < rank; i++) {
+            remaining &= remaining - 1;
+        }
+        return Integer.numberOfTrailingZeros(remaining);
+    }
+
+    /**
+     * Breeds into the empty cells of the given tile. The x coordinates of the
+     * tile are the indexes of the words of the rows of the planes.
+     */
+    private void breedPopulation(int startWord, int startY, int endWord, int endY) {
+        long step = currentStep;
+        DnsCombiner combiner = currentCombiner;
+        CellRandom random = stepBuffers.get().random;
+
+        int births = 0;
+        int failures = 0;
+        for (int y = startY; y < endY; y++) {
+            int rowStart = (y + HALO) * planeWordsPerRow;
+            for (int wordIndex = startWord; wordIndex < endWord; wordIndex++) {
+                long emptyCells = ~occupancy[rowStart + wordIndex] & rowCellMasks[wordIndex];
+                while (emptyCells != 0) {
+                    int x = (wordIndex << 6) + Long.numberOfTrailingZeros(emptyCells) - HALO;
+                    emptyCells &= emptyCells - 1;
+
+                    if (breedCell(x, y, step, combiner, random)) {
+                        births++;
+                    }
+                    else {
+                        failures++;
+                    }
+                }
+            }
+        }
+        metrics.addBreedings(births, failures);
+    }
+
+    /**
+     * Breeds a new entity into the given empty cell and returns {@code true}
+     * if there were parents to breed it from.
+     */
+    private boolean breedCell(int x, int y, long step, DnsCombiner combiner, CellRandom random) {
+        int candidates = getNeighbourMask(parents, x, y);
+        if (candidates == 0) {
+            return false;
+        }
+
+        random.selectStream(step, PHASE_BREED, getStreamIndex(x, y));
+        while (candidates != 0) {
+            int neighbour1 = selectNeighbour(candidates, random.nextInt(Integer.bitCount(candidates)));
+            int entity1X = x + NEIGHBOUR_DX[neighbour1];
+            int entity1Y = y + NEIGHBOUR_DY[neighbour1];
+
+            int otherCandidates = getNeighbourMask(parents, entity1X, entity1Y);
+            if (otherCandidates != 0) {
+                int neighbour2 = selectNeighbour(otherCandidates, random.nextInt(Integer.bitCount(otherCandidates)));
+                int entity2X = entity1X + NEIGHBOUR_DX[neighbour2];
+                int entity2Y = entity1Y + NEIGHBOUR_DY[neighbour2];
+
+                Entity<EntityAction> entity1 = board[getCellIndex(entity1X, entity1Y)];
+                Entity<EntityAction> entity2 = board[getCellIndex(entity2X, entity2Y)];
+                Entity<EntityAction> newEntity = entity1.breed(entity2, combiner, random);
+                setCell(x, y, newEntity);
+                return true;
+            }
+
+            candidates &= ~(1 << neighbour1);
+        }
+        return false;
+    }
+
+    /**
+     * Breeds new entities into the empty cells in parallel.
+     * <P>
+     * Breeding into a cell only reads the parents plane and the parents
+     * themselves, none of which is changed while breeding: Newborns cannot
+     * be parents in the step they were born and only empty cells are written.
+     * So all the tiles can be processed at once, in any order. The tiles are
+     * made of whole words of the planes, so that the tasks setting the
+     * occupancy bits of the newborns do not share words.
+     */
+    private void breedPopulation() {
+        currentCombiner = geneCombiner;
+
+        int tileWords = (int)((tileWidth + 63L) >>> 6);
+        breedLoop.run(planeWordsPerRow, height, tileWords, tileHeight);
+    }
+
+    private void resolveAccidents(int startY, int endY) {
+        long step = currentStep;
+        double accidentRateOfStep = currentAccidentRate;
+        CellRandom random = stepBuffers.get().random;
+        int deaths = 0;
+        for (int y = startY; y < endY; y++) {
+            int rowStart = (y + HALO) * planeWordsPerRow;
+            for (int wordIndex = 0; wordIndex < planeWordsPerRow; wordIndex++) {
+                long occupiedCells = occupancy[rowStart + wordIndex] & rowCellMasks[wordIndex];
+                while (occupiedCells != 0) {
+                    int x = (wordIndex << 6) + Long.numberOfTrailingZeros(occupiedCells) - HALO;
+                    occupiedCells &= occupiedCells - 1;
+
+                    random.selectStream(step, PHASE_ACCIDENT, getStreamIndex(x, y));
+                    if (random.nextDouble() < accidentRateOfStep) {
+                        clearCell(x, y);
+                        deaths++;
+                    }
+                }
+            }
+        }
+        metrics.addAccidentDeaths(deaths);
+    }
+
+    private void resolveAccidents() {
+        currentAccidentRate = accidentRate;
+        accidentLoop.run(0, height, accidentThreshold);
+    }
+
+    /**
+     * Does a complete step of the world.
+     *
+     * @throws IllegalStateException thrown if a step was started but not
+     *   completed by {@link #runNextPhase() runNextPhase}
+     */
+    public void stepWorld() {
+        if (nextPhaseIndex != 0) {
+            throw new IllegalStateException("The phases of the current step must be completed first.");
+        }
+
+        long step = ++stepIndex;
+        Object stepTrace = TRACER.beginStep();
+
+        long stepStart = System.nanoTime();
+        long phaseStart = stepStart;
+        for (StepPhase phase: STEP_PHASES) {
+            Object phaseTrace = TRACER.beginPhase();
+            boolean traced = stepTrace != null || phaseTrace != null;
+            long prevCount = traced ? metrics.getPhaseCount(phase) : 0;
+
+            runPhase(phase, step);
+            phaseStart = endPhase(phase, phaseStart);
+
+            if (traced) {
+                long count = metrics.getPhaseCount(phase) - prevCount;
+                tracedPhaseCounts[phase.ordinal()] = count;
+                if (phaseTrace != null) {
+                    TRACER.endPhase(phaseTrace, phase, step, width, height, count);
+                }
+            }
+        }
+        long population = countPopulation();
+        metrics.recordStep(phaseStart - stepStart, population);
+
+        if (stepTrace != null) {
+            TRACER.endStep(stepTrace, step, width, height, population,
+                    tracedPhaseCounts[StepPhase.CHOOSE_ACTIONS.ordinal()],
+                    tracedPhaseCounts[StepPhase.RESOLVE_FIGHTS.ordinal()],
+                    tracedPhaseCounts[StepPhase.RESOLVE_ACCIDENTS.ordinal()],
+                    tracedPhaseCounts[StepPhase.BREED.ordinal()]);
+        }
+    }
+
+    /**
+     * Returns the phase to be run by the next call to
+     * {@link #runNextPhase() runNextPhase}. This is the first phase, if no
+     * step is in progress.
+     */
+    public StepPhase getNextPhase() {
+        return STEP_PHASES[nextPhaseIndex];
+    }
+
+    /**
+     * Runs the next phase of the current step or starts a new step with its
+     * first phase. Running every phase of a step by this method has the same
+     * effect as a single {@link #stepWorld() stepWorld} call, except that the
+     * step is not traced and its latency is not recorded. The latency of the
+     * phases is recorded in the {@link #getMetrics() metrics} of this world.
+     * <P>
+     * This method allows to measure the phases of the steps separately.
+     */
+    public void runNextPhase() {
+        if (nextPhaseIndex == 0) {
+            ++stepIndex;
+        }
+
+        StepPhase phase = STEP_PHASES[nextPhaseIndex];
+        long phaseStart = System.nanoTime();
+        runPhase(phase, stepIndex);
+        endPhase(phase, phaseStart);
+
+        nextPhaseIndex = (nextPhaseIndex + 1) % STEP_PHASES.length;
+        if (nextPhaseIndex == 0) {
+            metrics.setPopulation(countPopulation());
+        }
+    }
+
+    private void runPhase(StepPhase phase, long step) {
+        currentStep = step;
+        switch (phase) {
+            case CHOOSE_ACTIONS:
+                chooseActions();
+                // The fights check the attacks of the ghost cells.
+                refreshHalo(chosenAttacks);
+                break;
+            case RESOLVE_FIGHTS:
+                resolveFight();
+                break;
+            case RESOLVE_ACCIDENTS:
+                resolveAccidents();
+                refreshCellHalo();
+                break;
+            case BREED:
+                breedPopulation();
+                refreshCellHalo();
+                break;
+            default:
+                throw new AssertionError(phase.name());
+        }
+    }
+
+    /**
+     * Records the time spent in the given phase and returns the current time
+     * which is the start time of the next phase.
+     */
+    private long endPhase(StepPhase phase, long phaseStart) {
+        long phaseEnd = System.nanoTime();
+        metrics.recordPhase(phase, phaseEnd - phaseStart);
+        return phaseEnd;
+    }
+
+    private long countPopulation() {
+        long result = 0;
+        for (int y = 0; y < height; y++) {
+            int rowStart = (y + HALO) * planeWordsPerRow;
+            for (int wordIndex = 0; wordIndex < planeWordsPerRow; wordIndex++) {
+                result += Long.bitCount(occupancy[rowStart + wordIndex] & rowCellMasks[wordIndex]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the metrics of this world, which can be registered to an
+     * {@code MBeanServer}. The returned object may be used by any thread.
+     */
+    public WorldMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the total time spent in the given phase of all the steps done
+     * so far in nanoseconds. This method may be called from any thread.
+     */
+    public long getTotalPhaseNanos(StepPhase phase) {
+        ExceptionHelper.checkNotNullArgument(phase, "phase");
+        return metrics.getTotalPhaseNanos(phase);
+    }
+
+    private int getPopulationHeaderSize() {
+        // magic + version + topology + width + height
+        return 4 + 2 + GenomeCodec.getTopologySize(topology) + 4 + 4;
+    }
+
+    /**
+     * Returns the number of bytes
+     * {@link #writePopulation(ByteBuffer) writePopulation} would currently
+     * write.
+     */
+    public int getPopulationSize() {
+        int entitySize = Entity.getEncodedSize(topology);
+
+        int result = getPopulationHeaderSize() + width * height;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (isOccupied(x, y)) {
+                    result += entitySize;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes every entity of this world to the given buffer. The population
+     * is written in big-endian byte order regardless of the byte order of
+     * the buffer.
+     * <P>
+     * The format starts with a header (magic number, format version,
+     * topology, width and height), followed by a byte for each cell (0 for
+     * an empty cell, 1 for a cell with an entity) in row-major order. The
+     * byte of a cell containing an entity is followed by the entity as
+     * written by {@link Entity#writeTo(ByteBuffer)}.
+     *
+     * @see #readPopulation(ByteBuffer)
+     */
+    public void writePopulation(ByteBuffer buffer) {
+        ByteOrder prevOrder = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            buffer.putInt(POPULATION_MAGIC);
+            buffer.putShort(POPULATION_FORMAT_VERSION);
+            GenomeCodec.writeTopology(topology, buffer);
+            buffer.putInt(width);
+            buffer.putInt(height);
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    Entity<EntityAction> entity = board[getCellIndex(x, y)];
+                    if (entity != null) {
+                        buffer.put((byte)1);
+                        entity.writeTo(buffer);
+                    }
+                    else {
+                        buffer.put((byte)0);
+                    }
+                }
+            }
+        } finally {
+            buffer.order(prevOrder);
+        }
+    }
+
+    /**
+     * Replaces every entity of this world with the entities read from the
+     * given buffer as written by
+     * {@link #writePopulation(ByteBuffer) writePopulation}. The population
+     * must have been written by a world of the same size and topology.
+     *
+     * @throws IllegalArgumentException thrown if the buffer does not contain
+     *   a population compatible with this world
+     */
+    public void readPopulation(ByteBuffer buffer) {
+        ByteOrder prevOrder = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            int magic = buffer.getInt();
+            if (magic != POPULATION_MAGIC) {
+                throw new IllegalArgumentException("The buffer does not contain a population.");
+            }
+
+            short version = buffer.getShort();
+            if (version != POPULATION_FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported population format version: " + version);
+            }
+
+            GenomeCodec.readTopology(topology, buffer);
+
+            int readWidth = buffer.getInt();
+            int readHeight = buffer.getInt();
+            if (readWidth != width || readHeight != height) {
+                throw new IllegalArgumentException("The population was written by a world of size "
+                        + readWidth + "x" + readHeight + " instead of " + width + "x" + height);
+            }
+
+            EntityAction[] actions = EntityAction.values();
+            Entity<EntityAction>[] newBoard = createBoard(width * height);
+            for (int i = 0; i < newBoard.length; i++) {
+                byte cellKind = buffer.get();
+                switch (cellKind) {
+                    case 0:
+                        break;
+                    case 1:
+                        newBoard[i] = Entity.readFrom(topology, actions, buffer);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid cell at index " + i + ": " + cellKind);
+                }
+            }
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    Entity<EntityAction> entity = newBoard[y * width + x];
+                    if (entity != null) {
+                        setCell(x, y, entity);
+                    }
+                    else {
+                        clearCell(x, y);
+                    }
+                }
+            }
+            refreshCellHalo();
+            metrics.setPopulation(countPopulation());
+        } finally {
+            buffer.order(prevOrder);
+        }
+    }
+
+    public WorldView createAppearanceView() {
+        Object viewTrace = TRACER.beginView();
+        int[] pixels = new int[width * height];
+
+        double appearanceScale = 1.0 / (Entity.MAX_APPEARANCE - Entity.MIN_APPEARANCE);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color;
+
+                if (isOccupied(x, y)) {
+                    double appearance = appearances[getCellIndex(x, y)];
+                    double relAppearance = (appearance - Entity.MIN_APPEARANCE) * appearanceScale;
+                    int grayLevel = (int)(relAppearance * 256.0);
+                    grayLevel = Math.max(0, Math.min(grayLevel, 0xFF));
+                    color = grayLevel | (grayLevel << 8) | (grayLevel << 16) | 0xFF00_0000;
+                }
+                else {
+                    color = 0xFFFF0000; // red
+                }
+                pixels[width * y + x] = color;
+            }
+        }
+
+        TRACER.endView(viewTrace, "Appearance", width, height);
+        return new WorldView("Appearance", width, height, pixels);
+    }
+
+    public WorldView createAgeView() {
+        Object viewTrace = TRACER.beginView();
+        int[] pixels = new int[width * height];
+
+        long minAge = Long.MAX_VALUE;
+        long maxAge = Long.MIN_VALUE;
+        double avgAge = 0.0;
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (isOccupied(x, y)) {
+                    long age = ages[getCellIndex(x, y)];
+                    if (age < minAge) minAge = age;
+                    if (age > maxAge) maxAge = age;
+
+                    count++;
+                    double w0 = (double)(count - 1) / (double)count;
+                    double w1 = 1.0 / (double)count;
+                    avgAge = w0 * avgAge + w1 * (double)age;
+                }
+            }
+        }
+
+        double ageRadius = Math.min(maxAge - avgAge, avgAge - minAge);
+        double lowAge = avgAge - ageRadius;
+        double highAge = avgAge + ageRadius;
+        double ageScale = 255.0 / (highAge - lowAge);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color;
+
+                if (isOccupied(x, y)) {
+                    double age = ages[getCellIndex(x, y)];
+                    double unboundedGrayLevel = ageScale * (age - lowAge);
+                    int grayLevel = (int)Math.round(Math.max(0.0, Math.min(unboundedGrayLevel, 255.0)));
+                    color = grayLevel | (grayLevel << 8) | (grayLevel << 16) | 0xFF00_0000;
+                }
+                else {
+                    color = 0xFFFF0000; // red
+                }
+                pixels[width * y + x] = color;
+            }
+        }
+
+        TRACER.endView(viewTrace, "Age", width, height);
+        return new WorldView("Age", width, height, pixels);
+    }
+
+    public WorldView[] viewWorld() {
+        return new WorldView[]{
+            createAppearanceView(),
+            createAgeView()
+        };
+    }
+
+    private static void updateRunAvg(int index, double[] avgs, int[] counts, double toAdd) {
+        int prevCount = counts[index];
+        int nextCount = prevCount + 1;
+        counts[index] = nextCount;
+
+        double prevAvg = avgs[index];
+
+        double w0 = (double)prevCount / (double)nextCount;
+        double w1 = 1.0 / (double)nextCount;
+        avgs[index] = w0 * prevAvg + w1 * toAdd;
+    }
+
+    public void getGraphs(final double[] racismGraph, final double[] doNothingGraph) {
+        if (racismGraph.length != doNothingGraph.length) {
+            throw new IllegalArgumentException("Arguments must have the same length.");
+        }
+
+        Object graphsTrace = TRACER.beginGraphs();
+
+        Arrays.fill(racismGraph, 0.0);
+        Arrays.fill(doNothingGraph, 0.0);
+
+        final Map<EntityAction, Integer> neighbourIndex = new EnumMap<>(EntityAction.class);
+        neighbourIndex.put(EntityAction.TOP_LEFT, 0);
+        neighbourIndex.put(EntityAction.LEFT, 1);
+        neighbourIndex.put(EntityAction.BOTTOM_LEFT, 2);
+        neighbourIndex.put(EntityAction.TOP, 3);
+        neighbourIndex.put(EntityAction.BOTTOM, 4);
+        neighbourIndex.put(EntityAction.TOP_RIGHT, 5);
+        neighbourIndex.put(EntityAction.RIGHT, 6);
+        neighbourIndex.put(EntityAction.BOTTOM_RIGHT, 7);
+
+        final double lowRelAppearance = Entity.MIN_APPEARANCE - Entity.MAX_APPEARANCE;
+        final double highRelAppearance = Entity.MAX_APPEARANCE - Entity.MIN_APPEARANCE;
+
+        final double testValueMultiplier =
+                (highRelAppearance - lowRelAppearance) / ((double)racismGraph.length - 1.0);
+
+        final int[] racismCounts = new int[racismGraph.length];
+        final int[] doNothingGraphCounts = new int[doNothingGraph.length];
+        // racismCounts, doNothingGraphCounts are initialized with zeros
+
+        Set<EntityAction> testedActionsSet = EnumSet.allOf(EntityAction.class);
+        testedActionsSet.retainAll(neighbourIndex.keySet());
+        final EntityAction[] testedActions
+                = testedActionsSet.toArray(new EntityAction[testedActionsSet.size()]);
+
+        ForkJoinUtils.forAll(algPool, 0, racismGraph.length, graphThreshold, new IntRangeTask() {
+            @Override
+            public void doWork(int startInclusive, int endExclusive) {
+                final double[] neighbours = new double[8];
+
+                for (int outputIndex = startInclusive; outputIndex < endExclusive; outputIndex++) {
+                    double testedValue = testValueMultiplier * outputIndex + lowRelAppearance;
+
+                    // gcd(boardStep, cellCount) == 1, so the loop below
+                    // loops over all elements.
+                    //
+                    // We use this tricky loop, so that contention on the
+                    // synchronized block below will be unlikely.
+                    int cellCount = width * height;
+                    int boardStep = cellCount < Integer.MAX_VALUE
+                            ? cellCount + 1
+                            : cellCount - 1;
+                    int boardIndex = ThreadLocalRandom.current().nextInt(cellCount);
+                    for (int loopCount = 0; loopCount < cellCount; loopCount++) {
+                        boardIndex = (boardIndex + boardStep) % cellCount;
+                        Entity<EntityAction> entity = board[getCellIndex(boardIndex % width, boardIndex / width)];
+                        if (entity != null) {
+                            double appearance = entity.getAppearance();
+                            double minAllowed = Entity.MIN_APPEARANCE - appearance;
+                            double maxAllowed = Entity.MAX_APPEARANCE - appearance;
+                            if (testedValue < minAllowed || testedValue > maxAllowed) {
+                                continue;
+                            }
+
+                            for (EntityAction testedAction: testedActions) {
+                                int testedIndex = neighbourIndex.get(testedAction);
+
+                                Arrays.fill(neighbours, 0.0);
+                                neighbours[testedIndex] = testedValue;
+
+                                EntityAction action;
+                                synchronized (entity) {
+                                    action = entity.thinkWithoutAging(neighbours);
+                                }
+                                EntityAction.AttackPosition attack = action.getAction();
+
+                                double racist;
+                                double idle;
+                                if (attack != null) {
+                                    idle = 0.0;
+                                    Integer actionValue = neighbourIndex.get(action);
+                                    if (actionValue != null && actionValue.intValue() == testedIndex) {
+                                        racist = 1.0;
+                                    }
+                                    else {
+                                        racist = 0.0;
+                                    }
+                                }
+                                else {
+                                    racist = 0.0;
+                                    idle = 1.0;
+                                }
+
+                                updateRunAvg(outputIndex, racismGraph, racismCounts, racist);
+                                updateRunAvg(outputIndex, doNothingGraph, doNothingGraphCounts, idle);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        for (int i = 0; i < racismGraph.length; i++) {
+            if (racismCounts[i] < MINIMUM_GRAPH_COUNT) racismGraph[i] = Double.NaN;
+            if (doNothingGraphCounts[i] < MINIMUM_GRAPH_COUNT) doNothingGraph[i] = Double.NaN;
+        }
+
+        TRACER.endGraphs(graphsTrace, racismGraph.length, metrics.getPopulation());
+    }
+
+    /**
+     * An image of the world stored as raw pixels. Each pixel is an ARGB color
+     * (as in {@code TYPE_INT_ARGB}) and the rows of the image follow each
+     * other without any padding.
+     */
+    public static final class WorldView {
+        private final String caption;
+        private final int width;
+        private final int height;
+        private final int[] pixels;
+
+        public WorldView(String caption, int width, int height, int[] pixels) {
+            ExceptionHelper.checkNotNullArgument(caption, "caption");
+            ExceptionHelper.checkArgumentInRange(width, 0, Integer.MAX_VALUE, "width");
+            ExceptionHelper.checkArgumentInRange(height, 0, Integer.MAX_VALUE, "height");
+            ExceptionHelper.checkNotNullArgument(pixels, "pixels");
+            ExceptionHelper.checkArgumentInRange(pixels.length, (long)width * height, (long)width * height, "pixels.length");
+
+            this.caption = caption;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        public String getCaption() {
+            return caption;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Returns the pixels of the image. The returned array is not a copy,
+         * so it must not be modified.
+         */
+        public int[] getPixels() {
+            return pixels;
+        }
+    }
+
+    private static final class StepBuffers {
+        public final CellRandom random;
+        public final Entity.BatchThinker<EntityAction> thinkBatch;
+        public final int[] thinkBatchPositions;
+        public final double[] neighbourAppearances;
+        public final int[] attackers;
+        public final int[] actionCounts;
+
+        public StepBuffers(MLPTopology topology, long seed) {
+            this.random = new CellRandom(seed);
+            this.thinkBatch = new Entity.BatchThinker<>(topology, THINK_BATCH_SIZE);
+            this.thinkBatchPositions = new int[THINK_BATCH_SIZE];
+            this.neighbourAppearances = new double[8];
+            this.attackers = new int[ATTACK_POSITIONS.length];
+            this.actionCounts = new int[EntityAction.values().length];
+        }
+    }
+}
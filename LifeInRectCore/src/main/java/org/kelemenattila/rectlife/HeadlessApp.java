@@ -0,0 +1,223 @@
+package org.kelemenattila.rectlife;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runs a world without a GUI for a given number of steps as fast as possible
+ * and reports the throughput of the simulation.
+ * <P>
+ * The arguments are given in the form {@code --name=value}, run with
+ * {@code --help} to list them. The metrics of the world are published as the
+ * {@code org.kelemenattila.rectlife:type=WorldMetrics,name=headless} MXBean
+ * while the world is running.
+ *
+ * @author Kelemen Attila
+ */
+public final class HeadlessApp {
+    private static final int DEFAULT_WORLD_WIDTH = 100;
+    private static final int DEFAULT_WORLD_HEIGHT = 100;
+    private static final double DEFAULT_GENE_MUTATE_RATE = 0.001;
+    private static final double DEFAULT_ACCIDENT_RATE = 0.001;
+    private static final double DEFAULT_DEFENDER_CHANCE_MULTIPLIER = 0.5;
+    private static final long DEFAULT_STEP_COUNT = 1000;
+    private static final long DEFAULT_REPORT_INTERVAL_SEC = 10;
+
+    private static final String USAGE = ""
+            + "Options (all of them are optional):\n"
+            + "  --width=<cells>             width of the world (default: " + DEFAULT_WORLD_WIDTH + ")\n"
+            + "  --height=<cells>            height of the world (default: " + DEFAULT_WORLD_HEIGHT + ")\n"
+            + "  --edge-mode=<mode>          TORUS or BOUNDED (default: BOUNDED)\n"
+            + "  --accident-rate=<rate>      (default: " + DEFAULT_ACCIDENT_RATE + ")\n"
+            + "  --mutate-rate=<rate>        (default: " + DEFAULT_GENE_MUTATE_RATE + ")\n"
+            + "  --defender-multiplier=<m>   (default: " + DEFAULT_DEFENDER_CHANCE_MULTIPLIER + ")\n"
+            + "  --seed=<seed>               seed of the world (default: random)\n"
+            + "  --steps=<count>             number of steps to run (default: " + DEFAULT_STEP_COUNT + ")\n"
+            + "  --threads=<count>           parallelism of the pool (default: number of processors)\n"
+            + "  --report-interval=<sec>     seconds between progress reports, 0 to disable"
+            + " (default: " + DEFAULT_REPORT_INTERVAL_SEC + ")\n";
+
+    private final PrintStream out;
+
+    private int width = DEFAULT_WORLD_WIDTH;
+    private int height = DEFAULT_WORLD_HEIGHT;
+    private EdgeMode edgeMode = EdgeMode.BOUNDED;
+    private double accidentRate = DEFAULT_ACCIDENT_RATE;
+    private double mutateRate = DEFAULT_GENE_MUTATE_RATE;
+    private double defenderMultiplier = DEFAULT_DEFENDER_CHANCE_MULTIPLIER;
+    private long seed = ThreadLocalRandom.current().nextLong();
+    private long stepCount = DEFAULT_STEP_COUNT;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private long reportIntervalSec = DEFAULT_REPORT_INTERVAL_SEC;
+
+    private HeadlessApp(PrintStream out) {
+        this.out = out;
+    }
+
+    private void parseArgs(String[] args) {
+        for (String arg: args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+
+            int separatorIndex = arg.indexOf('=');
+            String name = arg.substring(2, separatorIndex);
+            String value = arg.substring(separatorIndex + 1);
+            try {
+                parseArg(name, value);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid value for --" + name + ": " + value, ex);
+            }
+        }
+
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The size of the world must be positive.");
+        }
+        if (stepCount < 0) {
+            throw new IllegalArgumentException("The number of steps must not be negative.");
+        }
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        }
+        if (reportIntervalSec < 0) {
+            throw new IllegalArgumentException("The report interval must not be negative.");
+        }
+    }
+
+    private void parseArg(String name, String value) {
+        switch (name) {
+            case "width":
+                width = Integer.parseInt(value);
+                break;
+            case "height":
+                height = Integer.parseInt(value);
+                break;
+            case "edge-mode":
+                edgeMode = EdgeMode.valueOf(value.toUpperCase(Locale.ROOT));
+                break;
+            case "accident-rate":
+                accidentRate = Double.parseDouble(value);
+                break;
+            case "mutate-rate":
+                mutateRate = Double.parseDouble(value);
+                break;
+            case "defender-multiplier":
+                defenderMultiplier = Double.parseDouble(value);
+                break;
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "steps":
+                stepCount = Long.parseLong(value);
+                break;
+            case "threads":
+                threadCount = Integer.parseInt(value);
+                break;
+            case "report-interval":
+                reportIntervalSec = Long.parseLong(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: --" + name);
+        }
+    }
+
+    private void run() throws JMException {
+        out.printf(Locale.ROOT, "World: %d x %d (%s), seed: %d, threads: %d, steps: %d%n",
+                width, height, edgeMode, seed, threadCount, stepCount);
+
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        try {
+            EntityWorld world = new EntityWorld(pool, width, height, NetworkSettings.DEFAULT, seed, edgeMode);
+            world.setAccidentRate(accidentRate);
+            world.setMutateRate(mutateRate);
+            world.setDefenderChanceMultiplier(defenderMultiplier);
+
+            ObjectName metricsName = new ObjectName("org.kelemenattila.rectlife:type=WorldMetrics,name=headless");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(world.getMetrics(), metricsName);
+
+            long reportIntervalNanos = TimeUnit.SECONDS.toNanos(reportIntervalSec);
+            long startTime = System.nanoTime();
+            long lastReportTime = startTime;
+            long lastReportStep = 0;
+            for (long step = 1; step <= stepCount; step++) {
+                world.stepWorld();
+
+                long currentTime = System.nanoTime();
+                if (reportIntervalNanos > 0 && currentTime - lastReportTime >= reportIntervalNanos) {
+                    out.printf(Locale.ROOT, "Step %d: %s%n", step,
+                            formatThroughput(step - lastReportStep, currentTime - lastReportTime));
+                    lastReportTime = currentTime;
+                    lastReportStep = step;
+                }
+            }
+            long elapsedNanos = System.nanoTime() - startTime;
+
+            printSummary(world, elapsedNanos);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private String formatThroughput(long steps, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        double stepsPerSec = steps / seconds;
+        double cellUpdatesPerSec = stepsPerSec * width * height;
+        return String.format(Locale.ROOT, "%.2f steps/s, %.4g cell updates/s", stepsPerSec, cellUpdatesPerSec);
+    }
+
+    private void printSummary(EntityWorld world, long elapsedNanos) {
+        out.printf(Locale.ROOT, "Finished %d steps in %.3f s: %s%n",
+                stepCount, elapsedNanos / 1e9, formatThroughput(stepCount, elapsedNanos));
+
+        WorldMetrics metrics = world.getMetrics();
+        out.printf(Locale.ROOT, "Population: %d, births: %d, failed breedings: %d%n",
+                metrics.getPopulation(), metrics.getBirthCount(), metrics.getFailedBreedingCount());
+        out.printf(Locale.ROOT, "Attacks: %d, deaths: %d defenders, %d attackers, %d accidents%n",
+                metrics.getAttackCount(),
+                metrics.getDefenderFightDeathCount(),
+                metrics.getAttackerFightDeathCount(),
+                metrics.getAccidentDeathCount());
+
+        if (stepCount == 0) {
+            return;
+        }
+
+        for (StepPhase phase: StepPhase.values()) {
+            long phaseNanos = world.getTotalPhaseNanos(phase);
+            out.printf(Locale.ROOT, "  %-18s %10.3f ms/step %6.1f%%%n",
+                    phase,
+                    phaseNanos / 1e6 / stepCount,
+                    100.0 * phaseNanos / elapsedNanos);
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws JMException {
+        for (String arg: args) {
+            if ("--help".equals(arg)) {
+                System.out.print(USAGE);
+                return;
+            }
+        }
+
+        HeadlessApp app = new HeadlessApp(System.out);
+        try {
+            app.parseArgs(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        app.run();
+    }
+}
@@ -0,0 +1,60 @@
+package org.kelemenattila.rectlife;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations with power of two buckets: Bucket
+ * {@code i} (for {@code i > 0}) counts the durations within
+ * {@code [2^(i-1), 2^i)} nanoseconds and bucket zero counts the zero
+ * durations.
+ * <P>
+ * Instances of this class are safe to be used by multiple threads
+ * concurrently.
+ *
+ * @author Kelemen Attila
+ */
+final class LatencyHistogram {
+    static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new AtomicLong(0);
+        this.totalNanos = new AtomicLong(0);
+        this.maxNanos = new AtomicLong(0);
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+
+        long prevMax = maxNanos.get();
+        while (value > prevMax && !maxNanos.compareAndSet(prevMax, value)) {
+            prevMax = maxNanos.get();
+        }
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Returns the current state of this histogram. The returned snapshot is
+     * not atomic: Durations recorded concurrently might be partially
+     * included.
+     */
+    public LatencySnapshot getSnapshot() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = buckets.get(i);
+        }
+        return new LatencySnapshot(count.get(), totalNanos.get(), maxNanos.get(), bucketCounts);
+    }
+}
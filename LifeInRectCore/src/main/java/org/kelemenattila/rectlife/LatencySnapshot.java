@@ -0,0 +1,81 @@
+package org.kelemenattila.rectlife;
+
+/**
+ * The state of a histogram of durations at a given point in time. The
+ * durations are counted in power of two buckets: Bucket {@code i} (for
+ * {@code i > 0}) counts the durations within {@code [2^(i-1), 2^i)}
+ * nanoseconds and bucket zero counts the zero durations.
+ * <P>
+ * Instances of this class are immutable.
+ *
+ * @author Kelemen Attila
+ */
+public final class LatencySnapshot {
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long[] bucketCounts;
+
+    LatencySnapshot(long count, long totalNanos, long maxNanos, long[] bucketCounts) {
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.bucketCounts = bucketCounts;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return count > 0 ? (double)totalNanos / count : 0.0;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the median duration.
+     */
+    public long getMedianNanos() {
+        return getPercentileNanos(0.5);
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the 99th percentile of
+     * the durations.
+     */
+    public long getPercentile99Nanos() {
+        return getPercentileNanos(0.99);
+    }
+
+    private long getPercentileNanos(double percentile) {
+        long sumCount = 0;
+        for (long bucketCount: bucketCounts) {
+            sumCount += bucketCount;
+        }
+
+        long rank = (long)Math.ceil(percentile * sumCount);
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank && seen > 0) {
+                // The recorded maximum is a tighter bound for the last bucket.
+                return i == 0 ? 0 : Math.min(maxNanos, (1L << i) - 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of durations in each bucket.
+     */
+    public long[] getBucketCounts() {
+        return bucketCounts.clone();
+    }
+}
@@ -0,0 +1,70 @@
+package org.kelemenattila.rectlife;
+
+import org.jtrim.utils.ExceptionHelper;
+import org.kelemenattila.rectlife.neural.GenePrecision;
+import org.kelemenattila.rectlife.neural.MLPEvaluatorType;
+import org.kelemenattila.rectlife.neural.SigmoidNeuron;
+
+/**
+ * Defines how the networks of the entities are stored and evaluated. These
+ * settings do not affect the structure of the networks.
+ * <P>
+ * Instances of this class are immutable. The {@code with*} methods return a
+ * new instance differing only in the specified property.
+ *
+ * @author Kelemen Attila
+ */
+public final class NetworkSettings {
+    public static final NetworkSettings DEFAULT = new NetworkSettings(
+            MLPEvaluatorType.SCALAR,
+            GenePrecision.DOUBLE,
+            SigmoidNeuron.Approximation.EXACT);
+
+    private final MLPEvaluatorType evaluatorType;
+    private final GenePrecision genePrecision;
+    private final SigmoidNeuron.Approximation sigmoidApproximation;
+
+    public NetworkSettings(
+            MLPEvaluatorType evaluatorType,
+            GenePrecision genePrecision,
+            SigmoidNeuron.Approximation sigmoidApproximation) {
+        ExceptionHelper.checkNotNullArgument(evaluatorType, "evaluatorType");
+        ExceptionHelper.checkNotNullArgument(genePrecision, "genePrecision");
+        ExceptionHelper.checkNotNullArgument(sigmoidApproximation, "sigmoidApproximation");
+
+        this.evaluatorType = evaluatorType;
+        this.genePrecision = genePrecision;
+        this.sigmoidApproximation = sigmoidApproximation;
+    }
+
+    public MLPEvaluatorType getEvaluatorType() {
+        return evaluatorType;
+    }
+
+    public GenePrecision getGenePrecision() {
+        return genePrecision;
+    }
+
+    public SigmoidNeuron.Approximation getSigmoidApproximation() {
+        return sigmoidApproximation;
+    }
+
+    public NetworkSettings withEvaluatorType(MLPEvaluatorType evaluatorType) {
+        return new NetworkSettings(evaluatorType, genePrecision, sigmoidApproximation);
+    }
+
+    public NetworkSettings withGenePrecision(GenePrecision genePrecision) {
+        return new NetworkSettings(evaluatorType, genePrecision, sigmoidApproximation);
+    }
+
+    public NetworkSettings withSigmoidApproximation(SigmoidNeuron.Approximation sigmoidApproximation) {
+        return new NetworkSettings(evaluatorType, genePrecision, sigmoidApproximation);
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkSettings{" + "evaluatorType=" + evaluatorType
+                + ", genePrecision=" + genePrecision
+                + ", sigmoidApproximation=" + sigmoidApproximation + '}';
+    }
+}
@@ -0,0 +1,78 @@
+
+package org.kelemenattila.rectlife;
+
+import java.util.Random;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public final class StandardGeneticCombiner implements DnsCombiner {
+    private static final double MIN_MUTATE_SIZE = 1.0;
+    private static final double MAX_GENE_SIZE_FOR_MUTATE = 1.0E10;
+    private static final double MUTATE_MULTIPLIER = 1.5;
+
+    private final double mutateRate;
+
+    public StandardGeneticCombiner(double mutateRate) {
+        this.mutateRate = mutateRate;
+    }
+
+    private static double random(Random random, double lower, double upper) {
+        return (upper - lower) * random.nextDouble() + lower;
+    }
+
+    private static int chooseCrossoverIndex(int geneCount, Random random) {
+        return (int)(geneCount * random.nextDouble()) + 1;
+    }
+
+    private static double mutateGene(double gene, Random random) {
+        double maxMut = MUTATE_MULTIPLIER * Math.max(MIN_MUTATE_SIZE, Math.abs(gene));
+        maxMut = Math.min(MAX_GENE_SIZE_FOR_MUTATE, maxMut);
+        return random(random, -maxMut, maxMut);
+    }
+
+    @Override
+    public double[] combineDns(double[] dns1, double[] dns2, Random random) {
+        if (dns1.length != dns2.length) {
+            throw new IllegalArgumentException("Cannot combine dns because they are from different species.");
+        }
+
+        double[] genes = new double[dns1.length];
+
+        int index = chooseCrossoverIndex(genes.length, random);
+
+        System.arraycopy(dns1, 0, genes, 0, index);
+        System.arraycopy(dns2, index, genes, index, genes.length - index);
+
+        for (int i = 0; i < genes.length; i++) {
+            if (random.nextDouble() < mutateRate) {
+                genes[i] = mutateGene(genes[i], random);
+            }
+        }
+
+        return genes;
+    }
+
+    @Override
+    public float[] combineDns(float[] dns1, float[] dns2, Random random) {
+        if (dns1.length != dns2.length) {
+            throw new IllegalArgumentException("Cannot combine dns because they are from different species.");
+        }
+
+        float[] genes = new float[dns1.length];
+
+        int index = chooseCrossoverIndex(genes.length, random);
+
+        System.arraycopy(dns1, 0, genes, 0, index);
+        System.arraycopy(dns2, index, genes, index, genes.length - index);
+
+        for (int i = 0; i < genes.length; i++) {
+            if (random.nextDouble() < mutateRate) {
+                genes[i] = (float)mutateGene(genes[i], random);
+            }
+        }
+
+        return genes;
+    }
+}
@@ -0,0 +1,27 @@
+package org.kelemenattila.rectlife;
+
+/**
+ * Defines the phases of a single step of an {@link EntityWorld} in the order
+ * they are executed.
+ *
+ * @author Kelemen Attila
+ */
+public enum StepPhase {
+    /**
+     * Every entity chooses its action based on its neighbourhood.
+     */
+    CHOOSE_ACTIONS,
+    /**
+     * The attacks of the entities are resolved, killing one participant of
+     * every fight.
+     */
+    RESOLVE_FIGHTS,
+    /**
+     * The surviving entities might die in accidents.
+     */
+    RESOLVE_ACCIDENTS,
+    /**
+     * New entities are bred into the empty cells.
+     */
+    BREED
+}
@@ -0,0 +1,200 @@
+package org.kelemenattila.rectlife;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of an {@link EntityWorld}, collected without locking, so that
+ * they can be collected all the time. Instances of this class can be
+ * registered to an {@code MBeanServer} as an MXBean.
+ * <P>
+ * Instances of this class are safe to be used by multiple threads
+ * concurrently. The values returned by the getters might be slightly out of
+ * date compared to each other while a step is in progress.
+ *
+ * @author Kelemen Attila
+ */
+public final class WorldMetrics implements WorldMetricsMXBean {
+    private static final StepPhase[] STEP_PHASES = StepPhase.values();
+    private static final EntityAction[] ENTITY_ACTIONS = EntityAction.values();
+
+    private final AtomicLong stepCount;
+    private final AtomicLong population;
+    private final AtomicLong attackCount;
+    // Indexed by the ordinal of the action.
+    private final AtomicLongArray actionCounts;
+    private final AtomicLong defenderFightDeathCount;
+    private final AtomicLong attackerFightDeathCount;
+    private final AtomicLong accidentDeathCount;
+    private final AtomicLong birthCount;
+    private final AtomicLong failedBreedingCount;
+    private final LatencyHistogram stepLatency;
+    // Indexed by the ordinal of the phase.
+    private final LatencyHistogram[] phaseLatencies;
+
+    WorldMetrics() {
+        this.stepCount = new AtomicLong(0);
+        this.population = new AtomicLong(0);
+        this.attackCount = new AtomicLong(0);
+        this.actionCounts = new AtomicLongArray(ENTITY_ACTIONS.length);
+        this.defenderFightDeathCount = new AtomicLong(0);
+        this.attackerFightDeathCount = new AtomicLong(0);
+        this.accidentDeathCount = new AtomicLong(0);
+        this.birthCount = new AtomicLong(0);
+        this.failedBreedingCount = new AtomicLong(0);
+        this.stepLatency = new LatencyHistogram();
+        this.phaseLatencies = new LatencyHistogram[STEP_PHASES.length];
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            phaseLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    void recordStep(long nanos, long currentPopulation) {
+        stepLatency.record(nanos);
+        population.set(currentPopulation);
+        stepCount.incrementAndGet();
+    }
+
+    void recordPhase(StepPhase phase, long nanos) {
+        phaseLatencies[phase.ordinal()].record(nanos);
+    }
+
+    void setPopulation(long currentPopulation) {
+        population.set(currentPopulation);
+    }
+
+    // The methods below are called once per task with the counts of the task.
+
+    void addAttacks(int count) {
+        addIfNotZero(attackCount, count);
+    }
+
+    /**
+     * Adds the number of times each action was chosen (indexed by the
+     * ordinal of the action) and resets the given counts to zero.
+     */
+    void addActions(int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            int count = counts[i];
+            if (count != 0) {
+                actionCounts.addAndGet(i, count);
+                counts[i] = 0;
+            }
+        }
+    }
+
+    void addFightDeaths(int defenderDeaths, int attackerDeaths) {
+        addIfNotZero(defenderFightDeathCount, defenderDeaths);
+        addIfNotZero(attackerFightDeathCount, attackerDeaths);
+    }
+
+    void addAccidentDeaths(int count) {
+        addIfNotZero(accidentDeathCount, count);
+    }
+
+    void addBreedings(int births, int failures) {
+        addIfNotZero(birthCount, births);
+        addIfNotZero(failedBreedingCount, failures);
+    }
+
+    private static void addIfNotZero(AtomicLong counter, int count) {
+        if (count != 0) {
+            counter.addAndGet(count);
+        }
+    }
+
+    /**
+     * Returns the total number of entities affected by the given phase: The
+     * number of attacks, fight deaths, accident deaths or births.
+     */
+    long getPhaseCount(StepPhase phase) {
+        switch (phase) {
+            case CHOOSE_ACTIONS:
+                return attackCount.get();
+            case RESOLVE_FIGHTS:
+                return defenderFightDeathCount.get() + attackerFightDeathCount.get();
+            case RESOLVE_ACCIDENTS:
+                return accidentDeathCount.get();
+            case BREED:
+                return birthCount.get();
+            default:
+                throw new AssertionError(phase.name());
+        }
+    }
+
+    long getTotalPhaseNanos(StepPhase phase) {
+        return phaseLatencies[phase.ordinal()].getTotalNanos();
+    }
+
+    @Override
+    public long getStepCount() {
+        return stepCount.get();
+    }
+
+    @Override
+    public long getPopulation() {
+        return population.get();
+    }
+
+    @Override
+    public long getAttackCount() {
+        return attackCount.get();
+    }
+
+    /**
+     * Returns the number of times an entity chose the given action.
+     */
+    public long getActionCount(EntityAction action) {
+        return actionCounts.get(action.ordinal());
+    }
+
+    @Override
+    public Map<String, Long> getActionCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (EntityAction action: ENTITY_ACTIONS) {
+            result.put(action.name(), actionCounts.get(action.ordinal()));
+        }
+        return result;
+    }
+
+    @Override
+    public long getDefenderFightDeathCount() {
+        return defenderFightDeathCount.get();
+    }
+
+    @Override
+    public long getAttackerFightDeathCount() {
+        return attackerFightDeathCount.get();
+    }
+
+    @Override
+    public long getAccidentDeathCount() {
+        return accidentDeathCount.get();
+    }
+
+    @Override
+    public long getBirthCount() {
+        return birthCount.get();
+    }
+
+    @Override
+    public long getFailedBreedingCount() {
+        return failedBreedingCount.get();
+    }
+
+    @Override
+    public LatencySnapshot getStepLatency() {
+        return stepLatency.getSnapshot();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getPhaseLatencies() {
+        Map<String, LatencySnapshot> result = new LinkedHashMap<>();
+        for (StepPhase phase: STEP_PHASES) {
+            result.put(phase.name(), phaseLatencies[phase.ordinal()].getSnapshot());
+        }
+        return result;
+    }
+}
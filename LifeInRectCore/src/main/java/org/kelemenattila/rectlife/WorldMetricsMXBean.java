@@ -0,0 +1,61 @@
+package org.kelemenattila.rectlife;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics of an {@link EntityWorld}. The
+ * counters include every step done since the world was created.
+ *
+ * @see EntityWorld#getMetrics()
+ *
+ * @author Kelemen Attila
+ */
+public interface WorldMetricsMXBean {
+    public long getStepCount();
+
+    /**
+     * Returns the number of entities living in the world after the last
+     * completed step.
+     */
+    public long getPopulation();
+
+    /**
+     * Returns the number of times an entity chose to attack a neighbour.
+     */
+    public long getAttackCount();
+
+    /**
+     * Returns the number of times the entities chose each action, keyed by
+     * the name of the {@link EntityAction action}.
+     */
+    public Map<String, Long> getActionCounts();
+
+    /**
+     * Returns the number of entities killed by the fight at their own cell.
+     */
+    public long getDefenderFightDeathCount();
+
+    /**
+     * Returns the number of entities killed by the fight at the cell they
+     * attacked.
+     */
+    public long getAttackerFightDeathCount();
+
+    public long getAccidentDeathCount();
+
+    public long getBirthCount();
+
+    /**
+     * Returns the number of times an empty cell remained empty because no
+     * pair of parents could be found around it.
+     */
+    public long getFailedBreedingCount();
+
+    public LatencySnapshot getStepLatency();
+
+    /**
+     * Returns the latency of each {@link StepPhase phase} of the steps, keyed
+     * by the name of the phase.
+     */
+    public Map<String, LatencySnapshot> getPhaseLatencies();
+}
@@ -0,0 +1,96 @@
+package org.kelemenattila.rectlife;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Marks the steps, their phases, the graph calculations and the rendering of
+ * the views of the worlds for profilers. The {@code begin} methods return an
+ * object to be passed to the corresponding {@code end} method, or
+ * {@code null} if the activity is not being traced (in which case calling the
+ * {@code end} method is allowed but unnecessary).
+ * <P>
+ * The default tracer records Java Flight Recorder events if the JFR tracer was
+ * built (it requires Java 11) and JFR is available, otherwise it does nothing.
+ *
+ * @author Kelemen Attila
+ */
+abstract class WorldTracer {
+    private static final Logger LOGGER = Logger.getLogger(WorldTracer.class.getName());
+
+    private static final String JFR_TRACER_CLASS_NAME = "org.kelemenattila.rectlife.JfrWorldTracer";
+
+    public static final WorldTracer NO_TRACER = new NoOpWorldTracer();
+
+    public static WorldTracer getDefault() {
+        try {
+            Class<?> tracerClass = Class.forName(JFR_TRACER_CLASS_NAME);
+            return (WorldTracer)tracerClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            // The tracer was not built or jdk.jfr is missing.
+            LOGGER.log(Level.FINE, "The JFR world tracer is not available.", ex);
+            return NO_TRACER;
+        }
+    }
+
+    public abstract Object beginStep();
+
+    public abstract void endStep(Object stepTrace, long step, int width, int height,
+            long population, long attacks, long fightDeaths, long accidentDeaths, long births);
+
+    public abstract Object beginPhase();
+
+    /**
+     * @param count the number of entities affected by the phase: The number
+     *   of attacks, fight deaths, accident deaths or births depending on the
+     *   phase.
+     */
+    public abstract void endPhase(Object phaseTrace, StepPhase phase, long step, int width, int height, long count);
+
+    public abstract Object beginGraphs();
+
+    public abstract void endGraphs(Object graphsTrace, int graphDetail, long entityCount);
+
+    public abstract Object beginView();
+
+    public abstract void endView(Object viewTrace, String viewName, int width, int height);
+
+    private static final class NoOpWorldTracer extends WorldTracer {
+        @Override
+        public Object beginStep() {
+            return null;
+        }
+
+        @Override
+        public void endStep(Object stepTrace, long step, int width, int height,
+                long population, long attacks, long fightDeaths, long accidentDeaths, long births) {
+        }
+
+        @Override
+        public Object beginPhase() {
+            return null;
+        }
+
+        @Override
+        public void endPhase(Object phaseTrace, StepPhase phase, long step, int width, int height, long count) {
+        }
+
+        @Override
+        public Object beginGraphs() {
+            return null;
+        }
+
+        @Override
+        public void endGraphs(Object graphsTrace, int graphDetail, long entityCount) {
+        }
+
+        @Override
+        public Object beginView() {
+            return null;
+        }
+
+        @Override
+        public void endView(Object viewTrace, String viewName, int width, int height) {
+        }
+    }
+}
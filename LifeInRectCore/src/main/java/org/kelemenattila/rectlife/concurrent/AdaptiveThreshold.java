@@ -0,0 +1,81 @@
+package org.kelemenattila.rectlife.concurrent;
+
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Chooses the split threshold of
+ * {@link ForkJoinUtils#forAll(java.util.concurrent.ForkJoinPool, int, int, AdaptiveThreshold, IntRangeTask) ForkJoinUtils.forAll}
+ * from the cost of the elements measured in earlier invocations.
+ * <P>
+ * The threshold is chosen so that a single task takes about the target time
+ * given at construction time: Tasks shorter than that are dominated by the
+ * overhead of forking, while longer tasks are harder to balance between the
+ * threads. Until the first invocation is measured, the range is split into a
+ * few tasks for each thread of the pool.
+ * <P>
+ * A separate instance should be used for each kind of work, since the
+ * measured cost is only meaningful for the same kind of elements. Instances
+ * of this class are safe to be used by multiple threads concurrently but
+ * measurements recorded concurrently might be lost.
+ *
+ * @author Kelemen Attila
+ */
+public final class AdaptiveThreshold {
+    private static final long DEFAULT_TARGET_TASK_NANOS = 50 * 1000;
+    private static final int INITIAL_TASKS_PER_THREAD = 4;
+    // The weight of the latest measurement in the estimated cost.
+    private static final double COST_SMOOTHING = 0.25;
+
+    private final long targetTaskNanos;
+    // The estimated cost of processing a single element on a single thread or
+    // NaN if there was no measurement yet.
+    private volatile double elementCostNanos;
+
+    public AdaptiveThreshold() {
+        this(DEFAULT_TARGET_TASK_NANOS);
+    }
+
+    public AdaptiveThreshold(long targetTaskNanos) {
+        ExceptionHelper.checkArgumentInRange(targetTaskNanos, 1, Long.MAX_VALUE, "targetTaskNanos");
+
+        this.targetTaskNanos = targetTaskNanos;
+        this.elementCostNanos = Double.NaN;
+    }
+
+    /**
+     * Returns the threshold to be used to process the given number of
+     * elements with the given parallelism. The returned value is always at
+     * least 1.
+     */
+    public int getThreshold(int parallelism, int elementCount) {
+        double cost = elementCostNanos;
+        if (Double.isNaN(cost)) {
+            int taskCount = INITIAL_TASKS_PER_THREAD * Math.max(1, parallelism);
+            return Math.max(1, elementCount / taskCount);
+        }
+
+        double threshold = Math.ceil(targetTaskNanos / cost);
+        return (int)Math.max(1.0, Math.min(threshold, (double)Math.max(1, elementCount)));
+    }
+
+    /**
+     * Updates the estimated cost of an element from an invocation having
+     * processed the given number of elements in the given time, splitting
+     * them with the given threshold.
+     */
+    public void recordInvocation(int parallelism, int elementCount, int threshold, long elapsedNanos) {
+        if (elementCount <= 0 || elapsedNanos <= 0) {
+            return;
+        }
+
+        // Estimate the total time spent by the threads processing the range.
+        int taskCount = (elementCount - 1) / threshold + 1;
+        int busyThreads = Math.max(1, Math.min(parallelism, taskCount));
+        double measuredCost = (double)elapsedNanos * busyThreads / elementCount;
+
+        double prevCost = elementCostNanos;
+        elementCostNanos = Double.isNaN(prevCost)
+                ? measuredCost
+                : prevCost + COST_SMOOTHING * (measuredCost - prevCost);
+    }
+}
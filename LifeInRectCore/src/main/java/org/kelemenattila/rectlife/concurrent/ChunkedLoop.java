@@ -0,0 +1,110 @@
+package org.kelemenattila.rectlife.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the chunks {@code [0, chunkCount)} of a loop in a {@code ForkJoinPool}
+ * reusing the same {@code ForkJoinTask} objects in each run. The tasks are
+ * only allocated when a run needs more chunks than any of the previous runs.
+ * <P>
+ * The first chunk is processed by the task started in the pool and every
+ * other chunk is forked by it, so idle threads steal the chunks starting with
+ * the last one.
+ * <P>
+ * Instances of this class must not be run concurrently.
+ *
+ * @author Kelemen Attila
+ */
+abstract class ChunkedLoop {
+    private static final ChunkAction[] NO_CHUNKS = new ChunkAction[0];
+
+    private final ForkJoinPool pool;
+    private final RootAction rootAction;
+    private ChunkAction[] chunkActions;
+    // Only written before starting rootAction, which reads it.
+    private int chunkCount;
+
+    public ChunkedLoop(ForkJoinPool pool) {
+        this.pool = pool;
+        this.rootAction = new RootAction();
+        this.chunkActions = NO_CHUNKS;
+        this.chunkCount = 0;
+    }
+
+    /**
+     * Processes the chunk having the given index. This method is called by
+     * the threads of the pool.
+     */
+    protected abstract void runChunk(int chunkIndex);
+
+    /**
+     * Processes the chunks {@code [0, newChunkCount)} in the pool and returns
+     * after every chunk has been processed.
+     */
+    public final void run(int newChunkCount) {
+        if (newChunkCount <= 0) {
+            return;
+        }
+
+        if (chunkActions.length < newChunkCount) {
+            int prevLength = chunkActions.length;
+            chunkActions = Arrays.copyOf(chunkActions, newChunkCount);
+            for (int i = prevLength; i < newChunkCount; i++) {
+                chunkActions[i] = new ChunkAction(i);
+            }
+        }
+
+        for (int i = 0; i < newChunkCount; i++) {
+            chunkActions[i].reinitialize();
+        }
+        rootAction.reinitialize();
+
+        chunkCount = newChunkCount;
+        pool.invoke(rootAction);
+    }
+
+    @SuppressWarnings("serial")
+    private final class RootAction extends RecursiveAction {
+        @Override
+        protected void compute() {
+            int count = chunkCount;
+            for (int i = count - 1; i > 0; i--) {
+                chunkActions[i].fork();
+            }
+
+            try {
+                runChunk(0);
+            } finally {
+                // Every chunk must be done before returning even if a chunk
+                // failed, otherwise the next run might reinitialize a chunk
+                // still running.
+                for (int i = 1; i < count; i++) {
+                    chunkActions[i].quietlyJoin();
+                }
+            }
+
+            for (int i = 1; i < count; i++) {
+                if (chunkActions[i].isCompletedAbnormally()) {
+                    // Rethrows the exception of the chunk.
+                    chunkActions[i].join();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class ChunkAction extends RecursiveAction {
+        private final int chunkIndex;
+
+        public ChunkAction(int chunkIndex) {
+            this.chunkIndex = chunkIndex;
+        }
+
+        @Override
+        protected void compute() {
+            runChunk(chunkIndex);
+        }
+    }
+}
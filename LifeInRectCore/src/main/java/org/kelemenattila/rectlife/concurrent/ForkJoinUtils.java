@@ -0,0 +1,175 @@
+package org.kelemenattila.rectlife.concurrent;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public final class ForkJoinUtils {
+    public static void forAll(
+            ForkJoinPool pool,
+            int startInclusive,
+            int endExclusive,
+            int threshold,
+            IntRangeTask task) {
+        ExceptionHelper.checkNotNullArgument(pool, "pool");
+        ExceptionHelper.checkArgumentInRange(threshold, 1, Integer.MAX_VALUE, "threshold");
+        ExceptionHelper.checkNotNullArgument(task, "task");
+
+        pool.invoke(new ForAllAction(startInclusive, endExclusive, threshold, task));
+    }
+
+    /**
+     * Calls the given task for the range {@code [startInclusive, endExclusive)}
+     * in the given pool, splitting it with the threshold chosen by the given
+     * {@code AdaptiveThreshold}. The time this method takes is recorded into
+     * the {@code AdaptiveThreshold}.
+     */
+    public static void forAll(
+            ForkJoinPool pool,
+            int startInclusive,
+            int endExclusive,
+            AdaptiveThreshold threshold,
+            IntRangeTask task) {
+        ExceptionHelper.checkNotNullArgument(pool, "pool");
+        ExceptionHelper.checkNotNullArgument(threshold, "threshold");
+        ExceptionHelper.checkNotNullArgument(task, "task");
+
+        int parallelism = pool.getParallelism();
+        int elementCount = endExclusive - startInclusive;
+        int currentThreshold = threshold.getThreshold(parallelism, elementCount);
+
+        long startTime = System.nanoTime();
+        pool.invoke(new ForAllAction(startInclusive, endExclusive, currentThreshold, task));
+        threshold.recordInvocation(parallelism, elementCount, currentThreshold, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Calls the given task for each tile of the rectangle
+     * {@code [0, width) x [0, height)} in the given pool. The tiles are
+     * {@code tileWidth x tileHeight} large, except for the ones at the right
+     * and bottom edges which might be smaller. The rectangle is split along
+     * its longer side (in tiles), so neighbouring tiles tend to be processed
+     * by the same thread.
+     */
+    public static void forAllTiles(
+            ForkJoinPool pool,
+            int width,
+            int height,
+            int tileWidth,
+            int tileHeight,
+            IntRectTask task) {
+        ExceptionHelper.checkNotNullArgument(pool, "pool");
+        ExceptionHelper.checkArgumentInRange(width, 0, Integer.MAX_VALUE, "width");
+        ExceptionHelper.checkArgumentInRange(height, 0, Integer.MAX_VALUE, "height");
+        ExceptionHelper.checkArgumentInRange(tileWidth, 1, Integer.MAX_VALUE, "tileWidth");
+        ExceptionHelper.checkArgumentInRange(tileHeight, 1, Integer.MAX_VALUE, "tileHeight");
+        ExceptionHelper.checkNotNullArgument(task, "task");
+
+        if (width == 0 || height == 0) {
+            return;
+        }
+
+        int tileColumns = (width - 1) / tileWidth + 1;
+        int tileRows = (height - 1) / tileHeight + 1;
+        pool.invoke(new ForAllTilesAction(0, 0, tileColumns, tileRows,
+                width, height, tileWidth, tileHeight, task));
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ForAllAction extends RecursiveAction {
+        private final int startInclusive;
+        private final int endExclusive;
+        private final int threshold;
+        private final IntRangeTask task;
+
+        public ForAllAction(int startInclusive, int endExclusive, int threshold, IntRangeTask task) {
+            this.startInclusive = startInclusive;
+            this.endExclusive = endExclusive;
+            this.threshold = threshold;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (endExclusive - startInclusive <= threshold) {
+                task.doWork(startInclusive, endExclusive);
+            }
+            else {
+                int midPoint = (endExclusive - startInclusive) / 2 + startInclusive;
+                invokeAll(
+                        new ForAllAction(startInclusive, midPoint, threshold, task),
+                        new ForAllAction(midPoint, endExclusive, threshold, task));
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ForAllTilesAction extends RecursiveAction {
+        // The range of tiles to process.
+        private final int startColumn;
+        private final int startRow;
+        private final int endColumn;
+        private final int endRow;
+
+        private final int width;
+        private final int height;
+        private final int tileWidth;
+        private final int tileHeight;
+        private final IntRectTask task;
+
+        public ForAllTilesAction(
+                int startColumn, int startRow, int endColumn, int endRow,
+                int width, int height, int tileWidth, int tileHeight,
+                IntRectTask task) {
+            this.startColumn = startColumn;
+            this.startRow = startRow;
+            this.endColumn = endColumn;
+            this.endRow = endRow;
+            this.width = width;
+            this.height = height;
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            this.task = task;
+        }
+
+        private ForAllTilesAction createSubAction(int newStartColumn, int newStartRow, int newEndColumn, int newEndRow) {
+            return new ForAllTilesAction(newStartColumn, newStartRow, newEndColumn, newEndRow,
+                    width, height, tileWidth, tileHeight, task);
+        }
+
+        @Override
+        protected void compute() {
+            int columnCount = endColumn - startColumn;
+            int rowCount = endRow - startRow;
+
+            if (columnCount <= 1 && rowCount <= 1) {
+                int startX = startColumn * tileWidth;
+                int startY = startRow * tileHeight;
+                // Avoid overflowing for tiles larger than the rectangle.
+                int endX = startX + Math.min(tileWidth, width - startX);
+                int endY = startY + Math.min(tileHeight, height - startY);
+                task.doWork(startX, startY, endX, endY);
+            }
+            else if (columnCount >= rowCount) {
+                int midColumn = startColumn + columnCount / 2;
+                invokeAll(
+                        createSubAction(startColumn, startRow, midColumn, endRow),
+                        createSubAction(midColumn, startRow, endColumn, endRow));
+            }
+            else {
+                int midRow = startRow + rowCount / 2;
+                invokeAll(
+                        createSubAction(startColumn, startRow, endColumn, midRow),
+                        createSubAction(startColumn, midRow, endColumn, endRow));
+            }
+        }
+    }
+
+    private ForkJoinUtils() {
+        throw new AssertionError();
+    }
+}
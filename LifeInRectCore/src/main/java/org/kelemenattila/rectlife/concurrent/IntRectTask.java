@@ -0,0 +1,9 @@
+package org.kelemenattila.rectlife.concurrent;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public interface IntRectTask {
+    public void doWork(int startX, int startY, int endX, int endY);
+}
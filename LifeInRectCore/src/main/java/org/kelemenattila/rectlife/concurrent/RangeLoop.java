@@ -0,0 +1,87 @@
+package org.kelemenattila.rectlife.concurrent;
+
+import java.util.concurrent.ForkJoinPool;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Calls a task for a range of integers in a {@code ForkJoinPool} like
+ * {@link ForkJoinUtils#forAll(ForkJoinPool, int, int, int, IntRangeTask) ForkJoinUtils.forAll}
+ * but reuses its {@code ForkJoinTask} objects between the runs. So running
+ * the same loop repeatedly does not allocate memory once the number of
+ * chunks has settled.
+ * <P>
+ * The range is split into chunks of nearly equal size, none of them larger
+ * than the threshold.
+ * <P>
+ * Instances of this class must not be run concurrently, that is, a run must
+ * complete before the next one is started.
+ *
+ * @author Kelemen Attila
+ */
+public final class RangeLoop {
+    private final ForkJoinPool pool;
+    private final IntRangeTask task;
+    private final ChunkedLoop chunkedLoop;
+
+    // The range of the current run. Only written before starting the chunks.
+    private int startInclusive;
+    private int elementCount;
+    private int chunkCount;
+
+    public RangeLoop(ForkJoinPool pool, IntRangeTask task) {
+        ExceptionHelper.checkNotNullArgument(pool, "pool");
+        ExceptionHelper.checkNotNullArgument(task, "task");
+
+        this.pool = pool;
+        this.task = task;
+        this.chunkedLoop = new ChunkedLoop(pool) {
+            @Override
+            protected void runChunk(int chunkIndex) {
+                runRangeChunk(chunkIndex);
+            }
+        };
+    }
+
+    private void runRangeChunk(int chunkIndex) {
+        int chunkStart = startInclusive + (int)((long)elementCount * chunkIndex / chunkCount);
+        int chunkEnd = startInclusive + (int)((long)elementCount * (chunkIndex + 1) / chunkCount);
+        task.doWork(chunkStart, chunkEnd);
+    }
+
+    /**
+     * Calls the task for the range {@code [startInclusive, endExclusive)}
+     * split into chunks not larger than the given threshold and returns after
+     * every chunk has been processed.
+     */
+    public void run(int startInclusive, int endExclusive, int threshold) {
+        ExceptionHelper.checkArgumentInRange(threshold, 1, Integer.MAX_VALUE, "threshold");
+
+        int count = endExclusive - startInclusive;
+        if (count <= 0) {
+            return;
+        }
+
+        this.startInclusive = startInclusive;
+        this.elementCount = count;
+        this.chunkCount = (count - 1) / threshold + 1;
+        chunkedLoop.run(chunkCount);
+    }
+
+    /**
+     * Calls the task for the range {@code [startInclusive, endExclusive)}
+     * split with the threshold chosen by the given {@code AdaptiveThreshold}.
+     * The time this method takes is recorded into the
+     * {@code AdaptiveThreshold}.
+     */
+    public void run(int startInclusive, int endExclusive, AdaptiveThreshold threshold) {
+        ExceptionHelper.checkNotNullArgument(threshold, "threshold");
+
+        int parallelism = pool.getParallelism();
+        int count = endExclusive - startInclusive;
+        int currentThreshold = threshold.getThreshold(parallelism, count);
+
+        long startTime = System.nanoTime();
+        run(startInclusive, endExclusive, currentThreshold);
+        threshold.recordInvocation(parallelism, count, currentThreshold, System.nanoTime() - startTime);
+    }
+}
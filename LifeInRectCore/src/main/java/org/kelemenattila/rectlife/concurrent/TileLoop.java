@@ -0,0 +1,83 @@
+package org.kelemenattila.rectlife.concurrent;
+
+import java.util.concurrent.ForkJoinPool;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Calls a task for the tiles of a rectangle in a {@code ForkJoinPool} like
+ * {@link ForkJoinUtils#forAllTiles(ForkJoinPool, int, int, int, int, IntRectTask) ForkJoinUtils.forAllTiles}
+ * but reuses its {@code ForkJoinTask} objects between the runs. So running
+ * the same loop repeatedly over the same rectangle does not allocate memory.
+ * <P>
+ * The tiles are numbered in row-major order, so tiles processed after each
+ * other by the same thread tend to be neighbours.
+ * <P>
+ * Instances of this class must not be run concurrently, that is, a run must
+ * complete before the next one is started.
+ *
+ * @author Kelemen Attila
+ */
+public final class TileLoop {
+    private final IntRectTask task;
+    private final ChunkedLoop chunkedLoop;
+
+    // The tiles of the current run. Only written before starting the chunks.
+    private int width;
+    private int height;
+    private int tileWidth;
+    private int tileHeight;
+    private int tileColumns;
+
+    public TileLoop(ForkJoinPool pool, IntRectTask task) {
+        ExceptionHelper.checkNotNullArgument(pool, "pool");
+        ExceptionHelper.checkNotNullArgument(task, "task");
+
+        this.task = task;
+        this.chunkedLoop = new ChunkedLoop(pool) {
+            @Override
+            protected void runChunk(int chunkIndex) {
+                runTile(chunkIndex);
+            }
+        };
+    }
+
+    private void runTile(int tileIndex) {
+        int startX = (tileIndex % tileColumns) * tileWidth;
+        int startY = (tileIndex / tileColumns) * tileHeight;
+        // Avoid overflowing for tiles larger than the rectangle.
+        int endX = startX + Math.min(tileWidth, width - startX);
+        int endY = startY + Math.min(tileHeight, height - startY);
+        task.doWork(startX, startY, endX, endY);
+    }
+
+    /**
+     * Calls the task for each tile of the rectangle
+     * {@code [0, width) x [0, height)} and returns after every tile has been
+     * processed. The tiles are {@code tileWidth x tileHeight} large, except
+     * for the ones at the right and bottom edges which might be smaller.
+     */
+    public void run(int width, int height, int tileWidth, int tileHeight) {
+        ExceptionHelper.checkArgumentInRange(width, 0, Integer.MAX_VALUE, "width");
+        ExceptionHelper.checkArgumentInRange(height, 0, Integer.MAX_VALUE, "height");
+        ExceptionHelper.checkArgumentInRange(tileWidth, 1, Integer.MAX_VALUE, "tileWidth");
+        ExceptionHelper.checkArgumentInRange(tileHeight, 1, Integer.MAX_VALUE, "tileHeight");
+
+        if (width == 0 || height == 0) {
+            return;
+        }
+
+        int columns = (width - 1) / tileWidth + 1;
+        int rows = (height - 1) / tileHeight + 1;
+        long tileCount = (long)columns * rows;
+        if (tileCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many tiles: " + tileCount);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tileColumns = columns;
+        chunkedLoop.run((int)tileCount);
+    }
+}
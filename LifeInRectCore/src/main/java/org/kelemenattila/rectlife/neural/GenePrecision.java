@@ -0,0 +1,26 @@
+package org.kelemenattila.rectlife.neural;
+
+/**
+ * Defines the precision in which the weights (genes) of an {@link MLP} are
+ * stored.
+ * <P>
+ * Regardless of the precision of the weights, the weighted sums and the
+ * activation functions are always calculated in {@code double} precision.
+ *
+ * @see MLPTopology#MLPTopology(java.util.List, int, MLPEvaluatorType, GenePrecision)
+ *
+ * @author Kelemen Attila
+ */
+public enum GenePrecision {
+    /**
+     * The weights are stored as {@code double} values.
+     */
+    DOUBLE,
+
+    /**
+     * The weights are stored as {@code float} values, halving the memory
+     * needed for the weights. Every weight assigned to the network is rounded
+     * to the nearest {@code float} value.
+     */
+    FLOAT
+}
@@ -0,0 +1,82 @@
+package org.kelemenattila.rectlife.neural;
+
+/**
+ * The base class of the evaluators generated by {@link MLPEvaluatorGenerator}.
+ * The generated subclasses override the {@code evaluateOutputs} method
+ * matching the {@link GenePrecision gene precision} of the topology.
+ *
+ * @author Kelemen Attila
+ */
+abstract class GeneratedMLPEvaluator implements MLPEvaluator {
+    private final MLPTopology topology;
+
+    protected GeneratedMLPEvaluator(MLPTopology topology) {
+        this.topology = topology;
+    }
+
+    @Override
+    public final void evaluate(
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+        evaluateOutputs(weights, inputs, inputOffset, outputs, outputOffset, firstOutput, firstOutput + outputCount);
+    }
+
+    @Override
+    public final void evaluate(
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+        evaluateOutputs(weights, inputs, inputOffset, outputs, outputOffset, firstOutput, firstOutput + outputCount);
+    }
+
+    /**
+     * Calculates the outputs having an index within
+     * {@code [firstOutput, outputEnd)} from weights stored in {@code double}
+     * precision.
+     */
+    protected void evaluateOutputs(
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputEnd) {
+        throw new UnsupportedOperationException("The genes of this topology are not stored in double precision.");
+    }
+
+    /**
+     * Calculates the outputs having an index within
+     * {@code [firstOutput, outputEnd)} from weights stored in {@code float}
+     * precision.
+     */
+    protected void evaluateOutputs(
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputEnd) {
+        throw new UnsupportedOperationException("The genes of this topology are not stored in float precision.");
+    }
+
+    /**
+     * Applies the activation function of the given layer. The generated code
+     * calls this method only for activation functions it does not know.
+     */
+    protected final double activate(int layerIndex, double x) {
+        return topology.getActivation(layerIndex).activationFunction(x);
+    }
+}
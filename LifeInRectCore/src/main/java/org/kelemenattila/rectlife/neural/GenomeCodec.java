@@ -0,0 +1,129 @@
+package org.kelemenattila.rectlife.neural;
+
+import java.nio.ByteBuffer;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Contains methods to write the genes of networks to a {@code ByteBuffer} and
+ * to read them back.
+ * <P>
+ * The genes are written as raw {@code double} or {@code float} values
+ * (depending on the {@link GenePrecision gene precision} of the topology) in
+ * the order of {@link MLP#getGenes()}, using the byte order of the buffer.
+ * <P>
+ * The topology header only contains the gene precision and the size of each
+ * layer. The activation functions are not written, so the genes must be read
+ * with the same topology they were written with.
+ *
+ * @author Kelemen Attila
+ */
+public final class GenomeCodec {
+    private static final byte PRECISION_DOUBLE = 0;
+    private static final byte PRECISION_FLOAT = 1;
+
+    /**
+     * Returns the number of bytes {@link #writeTopology(MLPTopology, ByteBuffer) writeTopology}
+     * writes for the given topology.
+     */
+    public static int getTopologySize(MLPTopology topology) {
+        // precision + layer count + layer sizes
+        return 1 + 4 + 4 * topology.getLayerCount();
+    }
+
+    public static void writeTopology(MLPTopology topology, ByteBuffer buffer) {
+        int layerCount = topology.getLayerCount();
+
+        buffer.put(topology.getGenePrecision() == GenePrecision.FLOAT ? PRECISION_FLOAT : PRECISION_DOUBLE);
+        buffer.putInt(layerCount);
+        for (int i = 0; i < layerCount; i++) {
+            buffer.putInt(topology.getLayerSize(i));
+        }
+    }
+
+    /**
+     * Reads a topology header written by
+     * {@link #writeTopology(MLPTopology, ByteBuffer) writeTopology} and
+     * verifies that it matches the given topology.
+     *
+     * @throws IllegalArgumentException thrown if the header does not match
+     *   the given topology
+     */
+    public static void readTopology(MLPTopology expected, ByteBuffer buffer) {
+        byte precision = buffer.get();
+        GenePrecision genePrecision;
+        switch (precision) {
+            case PRECISION_DOUBLE:
+                genePrecision = GenePrecision.DOUBLE;
+                break;
+            case PRECISION_FLOAT:
+                genePrecision = GenePrecision.FLOAT;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown gene precision: " + precision);
+        }
+
+        if (genePrecision != expected.getGenePrecision()) {
+            throw new IllegalArgumentException("The genes were written in " + genePrecision
+                    + " precision instead of " + expected.getGenePrecision());
+        }
+
+        int layerCount = buffer.getInt();
+        if (layerCount != expected.getLayerCount()) {
+            throw new IllegalArgumentException("The network was written with " + layerCount
+                    + " layers instead of " + expected.getLayerCount());
+        }
+
+        for (int i = 0; i < layerCount; i++) {
+            int layerSize = buffer.getInt();
+            if (layerSize != expected.getLayerSize(i)) {
+                throw new IllegalArgumentException("Layer " + i + " was written with " + layerSize
+                        + " neurons instead of " + expected.getLayerSize(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes the genes of a network of the given
+     * topology take.
+     */
+    public static int getGenesSize(MLPTopology topology) {
+        int geneSize = topology.getGenePrecision() == GenePrecision.FLOAT ? 4 : 8;
+        return geneSize * topology.getGeneCount();
+    }
+
+    public static void writeGenes(double[] genes, ByteBuffer buffer) {
+        ExceptionHelper.checkArgumentInRange(buffer.remaining(), 8 * genes.length, Integer.MAX_VALUE, "buffer.remaining()");
+
+        buffer.asDoubleBuffer().put(genes);
+        buffer.position(buffer.position() + 8 * genes.length);
+    }
+
+    public static void writeGenes(float[] genes, ByteBuffer buffer) {
+        ExceptionHelper.checkArgumentInRange(buffer.remaining(), 4 * genes.length, Integer.MAX_VALUE, "buffer.remaining()");
+
+        buffer.asFloatBuffer().put(genes);
+        buffer.position(buffer.position() + 4 * genes.length);
+    }
+
+    public static double[] readGenes(int geneCount, ByteBuffer buffer) {
+        ExceptionHelper.checkArgumentInRange(buffer.remaining(), 8 * geneCount, Integer.MAX_VALUE, "buffer.remaining()");
+
+        double[] result = new double[geneCount];
+        buffer.asDoubleBuffer().get(result);
+        buffer.position(buffer.position() + 8 * geneCount);
+        return result;
+    }
+
+    public static float[] readFloatGenes(int geneCount, ByteBuffer buffer) {
+        ExceptionHelper.checkArgumentInRange(buffer.remaining(), 4 * geneCount, Integer.MAX_VALUE, "buffer.remaining()");
+
+        float[] result = new float[geneCount];
+        buffer.asFloatBuffer().get(result);
+        buffer.position(buffer.position() + 4 * geneCount);
+        return result;
+    }
+
+    private GenomeCodec() {
+        throw new AssertionError();
+    }
+}
@@ -13,6 +13,10 @@ public final class LinearNeuron extends Neuron {
         this.c = c;
     }
 
+    double getMultiplier() {
+        return c;
+    }
+
     @Override
     protected double activationFunction(double x) {
         return c * x;
@@ -0,0 +1,537 @@
+package org.kelemenattila.rectlife.neural;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.jtrim.utils.ExceptionHelper;
+import org.kelemenattila.rectlife.concurrent.ForkJoinUtils;
+import org.kelemenattila.rectlife.concurrent.IntRangeTask;
+
+/**
+ * A fully connected feed-forward network storing the weights of each layer
+ * in a single flat array.
+ * <P>
+ * The weights of a neuron are stored in a row: first the weight of the bias
+ * (constant 1.0 input), then the weights of the neurons of the previous layer.
+ * The rows of a layer follow each other and the layers follow each other in
+ * the order they were specified. This is also the order of the genes returned
+ * by {@link #getGenes() getGenes()}.
+ *
+ * @author Kelemen Attila
+ */
+public final class MLP implements java.io.Serializable {
+    private static final long serialVersionUID = 2413950306474624188L;
+
+    // The number of samples whose gradients are accumulated by a single task
+    // in trainBatch.
+    private static final int TRAINING_CHUNK_SIZE = 32;
+
+    public static interface NeuronFactory {
+        public Neuron createNeuron();
+    }
+
+    public static class LayerDescription {
+        private final NeuronFactory neuronFactory;
+        private final int layerSize;
+
+        public LayerDescription(NeuronFactory neuronFactory, int layerSize) {
+            ExceptionHelper.checkNotNullArgument(neuronFactory, "neuronFactory");
+
+            this.neuronFactory = neuronFactory;
+            this.layerSize = layerSize;
+        }
+
+        public int getLayerSize() {
+            return layerSize;
+        }
+
+        public NeuronFactory getNeuronFactory() {
+            return neuronFactory;
+        }
+    }
+
+    private final MLPTopology topology;
+    // Exactly one of these arrays is not null, depending on the precision
+    // specified by the topology.
+    private final double[] weights;
+    private final float[] floatWeights;
+
+    // Not needed when evaluating many networks at once, so they are
+    // allocated on the first use.
+    private transient double[][] values;
+    // Only needed for training, reused by the later calls.
+    private transient BatchGradient[] batchGradients;
+
+    public MLP(List<? extends LayerDescription> layerDescr, int inputCount) {
+        this(layerDescr, inputCount, null);
+    }
+
+    public MLP(List<? extends LayerDescription> layerDescr, int inputCount, double[] genes) {
+        this(new MLPTopology(layerDescr, inputCount), genes);
+    }
+
+    public MLP(MLPTopology topology) {
+        this(topology, (double[])null);
+    }
+
+    public MLP(MLPTopology topology, double[] genes) {
+        ExceptionHelper.checkNotNullArgument(topology, "topology");
+
+        int geneCount = topology.getGeneCount();
+        if (genes != null) {
+            ExceptionHelper.checkArgumentInRange(genes.length, geneCount, geneCount, "genes.length");
+        }
+
+        this.topology = topology;
+        if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+            this.weights = null;
+            this.floatWeights = genes != null ? toFloatArray(genes) : new float[geneCount];
+        }
+        else {
+            this.weights = genes != null ? genes.clone() : new double[geneCount];
+            this.floatWeights = null;
+        }
+    }
+
+    public MLP(MLPTopology topology, float[] genes) {
+        ExceptionHelper.checkNotNullArgument(topology, "topology");
+        ExceptionHelper.checkNotNullArgument(genes, "genes");
+
+        int geneCount = topology.getGeneCount();
+        ExceptionHelper.checkArgumentInRange(genes.length, geneCount, geneCount, "genes.length");
+
+        this.topology = topology;
+        if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+            this.weights = null;
+            this.floatWeights = genes.clone();
+        }
+        else {
+            this.weights = toDoubleArray(genes);
+            this.floatWeights = null;
+        }
+    }
+
+    private static float[] toFloatArray(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (float)values[i];
+        }
+        return result;
+    }
+
+    private static double[] toDoubleArray(float[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    private double[][] getValues() {
+        if (values == null) {
+            values = topology.createLayerBuffers();
+        }
+        return values;
+    }
+
+    public MLPTopology getTopology() {
+        return topology;
+    }
+
+    private void evaluate(
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+        if (weights != null) {
+            topology.evaluate(weights, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount, layerBuffers);
+        }
+        else {
+            topology.evaluate(floatWeights, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount, layerBuffers);
+        }
+    }
+
+    private void fireNeurons() {
+        double[][] values = getValues();
+        int outputLayerIndex = values.length - 1;
+        evaluate(values[0], 0, values[outputLayerIndex], 0, 0, topology.getOutputCount(), values);
+    }
+
+    private static void checkOutputRange(MLPTopology topology, int firstOutput, int outputCount) {
+        int allOutputCount = topology.getOutputCount();
+        ExceptionHelper.checkArgumentInRange(firstOutput, 0, allOutputCount, "firstOutput");
+        ExceptionHelper.checkArgumentInRange(outputCount, 0, allOutputCount - firstOutput, "outputCount");
+    }
+
+    private double[] getOutputLayerValues() {
+        return values[values.length - 1];
+    }
+
+    public double[] getOutputs() {
+        fireNeurons();
+        return getOutputLayerValues().clone();
+    }
+
+    /**
+     * Returns the outputs having an index within
+     * {@code [firstOutput, firstOutput + outputCount)}. The rest of the
+     * outputs are not calculated.
+     */
+    public double[] getOutputs(int firstOutput, int outputCount) {
+        checkOutputRange(topology, firstOutput, outputCount);
+
+        double[][] values = getValues();
+        double[] result = new double[outputCount];
+        evaluate(values[0], 0, result, 0, firstOutput, outputCount, values);
+        return result;
+    }
+
+    public int getInputCount() {
+        return topology.getInputCount();
+    }
+
+    public double getOutput(int index) {
+        fireNeurons();
+        return getOutputLayerValues()[index];
+    }
+
+    public void setInputs(double... values) {
+        System.arraycopy(values, 0, getValues()[0], 0, values.length);
+    }
+
+    public void setInput(int index, double value) {
+        getValues()[0][index] = value;
+    }
+
+    private static double random(double lowerBound, double upperBound) {
+        return Math.random() * (upperBound - lowerBound) + lowerBound;
+    }
+
+    public void randomWeights(double lowerBound, double upperBound) {
+        int geneCount = topology.getGeneCount();
+        for (int i = 0; i < geneCount; i++) {
+            setWeight(i, random(lowerBound, upperBound));
+        }
+    }
+
+    public void randomWeights(Random random, double lowerBound, double upperBound) {
+        int geneCount = topology.getGeneCount();
+        for (int i = 0; i < geneCount; i++) {
+            setWeight(i, random.nextDouble() * (upperBound - lowerBound) + lowerBound);
+        }
+    }
+
+    private double getWeight(int index) {
+        return weights != null ? weights[index] : floatWeights[index];
+    }
+
+    private void setWeight(int index, double weight) {
+        if (weights != null) {
+            weights[index] = weight;
+        }
+        else {
+            floatWeights[index] = (float)weight;
+        }
+    }
+
+    /**
+     * Trains this network on a single sample. The inputs of the network are
+     * set to the given inputs.
+     *
+     * @return the mean squared error of the outputs before the training
+     */
+    public double train(double alpha, double[] inputs, double[] expOutput) {
+        for (int i = 0; i < inputs.length; i++) {
+            setInput(i, inputs[i]);
+        }
+
+        BatchGradient gradient = getBatchGradients(1)[0];
+        gradient.clear();
+        gradient.accumulate(alpha, getValues()[0], expOutput, 0, 1);
+        addWeightChanges(gradient.weightChanges);
+        return gradient.mseSum;
+    }
+
+    /**
+     * Trains this network on a batch of samples in a single step: The changes
+     * of the weights are calculated for every sample using the weights
+     * before this call, and the sum of the changes is added to the weights.
+     * <P>
+     * The errors of each sample are propagated back the same way as
+     * {@link #train(double, double[], double[]) train} does: through the
+     * weights partially updated with the changes of that sample alone (as the
+     * original connection based implementation did). So training on a single
+     * sample changes the weights exactly as {@code train} does, even if there
+     * are hidden layers. Note however, that this means that for more than one
+     * sample, the result is not the true gradient step of the batch: It is
+     * deliberately kept this way, so that the batch is consistent with
+     * {@code train}.
+     *
+     * @param alpha the learning rate
+     * @param inputs the inputs of the samples: The inputs of sample {@code i}
+     *   start at {@code i * inputCount}.
+     * @param expOutputs the expected outputs of the samples: The outputs of
+     *   sample {@code i} start at {@code i * outputCount}.
+     * @param sampleCount the number of samples to train on
+     * @return the mean squared error of the outputs before the training,
+     *   averaged over the samples
+     */
+    public double trainBatch(double alpha, double[] inputs, double[] expOutputs, int sampleCount) {
+        return trainBatch(null, alpha, inputs, expOutputs, sampleCount);
+    }
+
+    /**
+     * Trains this network on a batch of samples in a single step, calculating
+     * the changes of the weights of the samples in parallel. The result is
+     * the same, regardless whether a pool is specified or not.
+     *
+     * @param pool the pool to calculate the changes of the weights in. This
+     *   argument can be {@code null}, in which case the calculation is done
+     *   on the calling thread.
+     *
+     * @see #trainBatch(double, double[], double[], int)
+     */
+    public double trainBatch(
+            ForkJoinPool pool,
+            final double alpha,
+            final double[] inputs,
+            final double[] expOutputs,
+            final int sampleCount) {
+        ExceptionHelper.checkArgumentInRange(sampleCount, 0, Integer.MAX_VALUE, "sampleCount");
+        ExceptionHelper.checkArgumentInRange(inputs.length,
+                sampleCount * topology.getInputCount(), Integer.MAX_VALUE, "inputs.length");
+        ExceptionHelper.checkArgumentInRange(expOutputs.length,
+                sampleCount * topology.getOutputCount(), Integer.MAX_VALUE, "expOutputs.length");
+
+        if (sampleCount == 0) {
+            return 0.0;
+        }
+
+        int chunkCount = (sampleCount + TRAINING_CHUNK_SIZE - 1) / TRAINING_CHUNK_SIZE;
+        final BatchGradient[] chunks = getBatchGradients(chunkCount);
+        IntRangeTask task = new IntRangeTask() {
+            @Override
+            public void doWork(int startInclusive, int endExclusive) {
+                for (int chunkIndex = startInclusive; chunkIndex < endExclusive; chunkIndex++) {
+                    int firstSample = chunkIndex * TRAINING_CHUNK_SIZE;
+                    int endSample = Math.min(sampleCount, firstSample + TRAINING_CHUNK_SIZE);
+
+                    BatchGradient chunk = chunks[chunkIndex];
+                    chunk.clear();
+                    chunk.accumulate(alpha, inputs, expOutputs, firstSample, endSample);
+                }
+            }
+        };
+
+        if (pool != null && chunkCount > 1) {
+            ForkJoinUtils.forAll(pool, 0, chunkCount, 1, task);
+        }
+        else {
+            task.doWork(0, chunkCount);
+        }
+
+        // The chunks are summed in a fixed order, so that the result does not
+        // depend on how the tasks were scheduled.
+        double[] weightChanges = chunks[0].weightChanges;
+        double mseSum = chunks[0].mseSum;
+        for (int i = 1; i < chunkCount; i++) {
+            double[] chunkChanges = chunks[i].weightChanges;
+            for (int j = 0; j < weightChanges.length; j++) {
+                weightChanges[j] += chunkChanges[j];
+            }
+            mseSum += chunks[i].mseSum;
+        }
+
+        addWeightChanges(weightChanges);
+        return mseSum / sampleCount;
+    }
+
+    private void addWeightChanges(double[] weightChanges) {
+        for (int i = 0; i < weightChanges.length; i++) {
+            setWeight(i, getWeight(i) + weightChanges[i]);
+        }
+    }
+
+    /**
+     * Returns at least {@code count} gradients, allocating only the ones not
+     * allocated by the previous calls.
+     */
+    private BatchGradient[] getBatchGradients(int count) {
+        BatchGradient[] result = batchGradients;
+        if (result == null || result.length < count) {
+            int prevLength = result != null ? result.length : 0;
+            result = result != null
+                    ? Arrays.copyOf(result, count)
+                    : new BatchGradient[count];
+            for (int i = prevLength; i < count; i++) {
+                result[i] = new BatchGradient();
+            }
+            batchGradients = result;
+        }
+        return result;
+    }
+
+    /**
+     * Accumulates the changes of the weights for a range of samples. Only
+     * reads the weights of the network, so multiple instances can be used
+     * concurrently. Both {@code train} and {@code trainBatch} calculate the
+     * changes of the weights through this class.
+     */
+    private final class BatchGradient {
+        private final double[][] values;
+        private final double[][] sums;
+        private final double[][] errors;
+        private final double[] weightChanges;
+        private double mseSum;
+
+        public BatchGradient() {
+            this.values = topology.createLayerBuffers();
+            this.sums = topology.createLayerBuffers();
+            this.errors = topology.createLayerBuffers();
+            this.weightChanges = new double[topology.getGeneCount()];
+            this.mseSum = 0.0;
+        }
+
+        public void clear() {
+            Arrays.fill(weightChanges, 0.0);
+            mseSum = 0.0;
+        }
+
+        public void accumulate(double alpha, double[] inputs, double[] expOutputs, int firstSample, int endSample) {
+            int inputCount = topology.getInputCount();
+            int outputLayerIndex = values.length - 1;
+            double[] outputs = values[outputLayerIndex];
+            double[] outputErrors = errors[outputLayerIndex];
+
+            for (int sample = firstSample; sample < endSample; sample++) {
+                System.arraycopy(inputs, sample * inputCount, values[0], 0, inputCount);
+                fire();
+
+                int expOutputOffset = sample * outputs.length;
+                double mse = 0.0;
+                for (int i = 0; i < outputs.length; i++) {
+                    double e = expOutputs[expOutputOffset + i] - outputs[i];
+                    outputErrors[i] = e;
+                    mse += e*e;
+                }
+                mseSum += mse / outputs.length;
+
+                for (int layerIndex = outputLayerIndex; layerIndex > 0; layerIndex--) {
+                    backPropagateLayer(alpha, layerIndex);
+                }
+            }
+        }
+
+        private void fire() {
+            for (int layerIndex = 1; layerIndex < values.length; layerIndex++) {
+                if (weights != null) {
+                    topology.evaluateLayer(layerIndex, weights,
+                            values[layerIndex - 1], 0,
+                            values[layerIndex], 0,
+                            sums[layerIndex]);
+                }
+                else {
+                    topology.evaluateLayer(layerIndex, floatWeights,
+                            values[layerIndex - 1], 0,
+                            values[layerIndex], 0,
+                            sums[layerIndex]);
+                }
+            }
+        }
+
+        private void backPropagateLayer(double alpha, int layerIndex) {
+            double[] layerErrors = errors[layerIndex];
+            double[] prevValues = values[layerIndex - 1];
+            int rowLength = prevValues.length + 1;
+            int layerOffset = topology.getWeightOffset(layerIndex);
+
+            if (layerIndex > 1) {
+                // The errors of the previous layer are calculated as if the
+                // weights of every neuron of this layer - except for the last
+                // one - had already been updated with the changes of this
+                // sample. This is how the original connection based
+                // implementation propagated the errors. For batches of more
+                // than one sample this is deliberately kept as well (instead
+                // of using the unchanged weights of a true gradient step).
+                Neuron prevActivation = topology.getActivation(layerIndex - 1);
+                double[] prevErrors = errors[layerIndex - 1];
+                double[] prevSums = sums[layerIndex - 1];
+                int lastNeuronIndex = layerErrors.length - 1;
+
+                for (int j = 0; j < prevValues.length; j++) {
+                    double sum = 0.0;
+                    int weightIndex = layerOffset + j + 1;
+                    for (int k = 0; k < layerErrors.length; k++) {
+                        double error = layerErrors[k];
+                        double weight = getWeight(weightIndex);
+                        if (k < lastNeuronIndex) {
+                            weight = weight + (alpha * error) * prevValues[j];
+                        }
+                        sum += weight * error;
+                        weightIndex += rowLength;
+                    }
+
+                    prevErrors[j] = prevActivation.dActivationFunction(prevSums[j]) * sum;
+                }
+            }
+
+            int weightIndex = layerOffset;
+            for (int k = 0; k < layerErrors.length; k++) {
+                double mul = alpha * layerErrors[k];
+
+                weightChanges[weightIndex++] += mul * MLPTopology.BIAS_VALUE;
+                for (int j = 0; j < prevValues.length; j++) {
+                    weightChanges[weightIndex++] += mul * prevValues[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the weights of this network in {@code double} precision.
+     */
+    public double[] getGenes() {
+        return weights != null ? weights.clone() : toDoubleArray(floatWeights);
+    }
+
+    /**
+     * Returns the weights of this network in {@code float} precision. If the
+     * weights are stored in {@code double} precision, they are rounded to the
+     * nearest {@code float} value.
+     */
+    public float[] getFloatGenes() {
+        return floatWeights != null ? floatWeights.clone() : toFloatArray(weights);
+    }
+
+    /**
+     * Writes the weights of this network to the given buffer in the precision
+     * they are stored in.
+     *
+     * @see GenomeCodec
+     */
+    public void writeGenes(ByteBuffer buffer) {
+        if (weights != null) {
+            GenomeCodec.writeGenes(weights, buffer);
+        }
+        else {
+            GenomeCodec.writeGenes(floatWeights, buffer);
+        }
+    }
+
+    /**
+     * Creates a network reading its weights from the given buffer as written
+     * by {@link #writeGenes(ByteBuffer) writeGenes}.
+     */
+    public static MLP readGenes(MLPTopology topology, ByteBuffer buffer) {
+        int geneCount = topology.getGeneCount();
+        if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+            return new MLP(topology, GenomeCodec.readFloatGenes(geneCount, buffer));
+        }
+        else {
+            return new MLP(topology, GenomeCodec.readGenes(geneCount, buffer));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.kelemenattila.rectlife.neural;
+
+/**
+ * Defines the code calculating the outputs of networks of a particular
+ * {@link MLPTopology topology}.
+ * <P>
+ * Implementations of this interface must be safe to be used by multiple
+ * threads concurrently.
+ *
+ * @author Kelemen Attila
+ */
+interface MLPEvaluator {
+    /**
+     * Calculates the outputs of the network having the given weights.
+     * Only the outputs having an index within
+     * {@code [firstOutput, firstOutput + outputCount)} are calculated and
+     * they are stored starting at {@code outputOffset}.
+     *
+     * @param layerBuffers the buffers returned by
+     *   {@link MLPTopology#createLayerBuffers()} to store the outputs of the
+     *   hidden layers
+     */
+    public void evaluate(
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers);
+
+    /**
+     * Calculates the outputs of the network having the given weights stored
+     * in {@code float} precision. Only the outputs having an index within
+     * {@code [firstOutput, firstOutput + outputCount)} are calculated.
+     *
+     * @param layerBuffers the buffers returned by
+     *   {@link MLPTopology#createLayerBuffers()} to store the outputs of the
+     *   hidden layers
+     */
+    public void evaluate(
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers);
+}
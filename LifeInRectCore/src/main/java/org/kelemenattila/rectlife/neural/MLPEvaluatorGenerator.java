@@ -0,0 +1,669 @@
+package org.kelemenattila.rectlife.neural;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates a {@link GeneratedMLPEvaluator} subclass specialized for a
+ * particular {@link MLPTopology topology}.
+ * <P>
+ * The generated {@code evaluateOutputs} method contains no loops: Every
+ * weight is read by a separate instruction with a constant index, the
+ * outputs of the hidden layers are kept in local variables and the known
+ * activation functions ({@link SigmoidNeuron}, {@link LinearNeuron} and
+ * {@link InputNeuron}) are inlined. The only branches left are the checks
+ * whether a particular output needs to be calculated. The summation order is
+ * the same as the order of the {@link ScalarMLPEvaluator}, so the outputs are
+ * the same as well.
+ * <P>
+ * The class is defined as a hidden class in this package, if the JVM supports
+ * it (Java 15 or later). Otherwise it is defined through
+ * {@code MethodHandles.Lookup.defineClass} (Java 9 or later). On older JVMs
+ * no evaluator is generated.
+ *
+ * @author Kelemen Attila
+ */
+final class MLPEvaluatorGenerator {
+    private static final Logger LOGGER = Logger.getLogger(MLPEvaluatorGenerator.class.getName());
+
+    // Methods larger than this are not compiled by HotSpot by default
+    // (-XX:HugeMethodLimit), so it is pointless to generate them.
+    private static final int MAX_CODE_LENGTH = 8000;
+    private static final int MAX_STACK = 16;
+
+    private static final String PACKAGE_PATH = "org/kelemenattila/rectlife/neural/";
+    private static final String BASE_CLASS = PACKAGE_PATH + "GeneratedMLPEvaluator";
+    private static final String TOPOLOGY_CLASS = PACKAGE_PATH + "MLPTopology";
+    private static final String APPROXIMATION_CLASS = PACKAGE_PATH + "SigmoidNeuron$Approximation";
+
+    private static final AtomicInteger CLASS_INDEX = new AtomicInteger(0);
+
+    // Parameters of evaluateOutputs
+    private static final int LOCAL_THIS = 0;
+    private static final int LOCAL_WEIGHTS = 1;
+    private static final int LOCAL_INPUTS = 2;
+    private static final int LOCAL_INPUT_OFFSET = 3;
+    private static final int LOCAL_OUTPUTS = 4;
+    private static final int LOCAL_OUTPUT_OFFSET = 5;
+    private static final int LOCAL_FIRST_OUTPUT = 6;
+    private static final int LOCAL_OUTPUT_END = 7;
+    private static final int FIRST_VALUE_LOCAL = 8;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int FALOAD = 0x30;
+    private static final int DALOAD = 0x31;
+    private static final int DSTORE = 0x39;
+    private static final int DASTORE = 0x52;
+    private static final int IADD = 0x60;
+    private static final int DADD = 0x63;
+    private static final int ISUB = 0x64;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int F2D = 0x8d;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int IF_ICMPGT = 0xa3;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int WIDE = 0xc4;
+
+    private static final int ITEM_INTEGER = 1;
+    private static final int ITEM_DOUBLE = 3;
+    private static final int ITEM_OBJECT = 7;
+    private static final int SAME_FRAME_EXTENDED = 251;
+    private static final int FULL_FRAME = 255;
+
+    /**
+     * Returns a new evaluator generated for the given topology or
+     * {@code null} if the evaluator cannot be generated.
+     */
+    public static MLPEvaluator tryGenerate(MLPTopology topology) {
+        if (topology.getLayerCount() < 2) {
+            return null;
+        }
+
+        String className = PACKAGE_PATH + "GeneratedMLPEvaluator$" + CLASS_INDEX.incrementAndGet();
+        byte[] classBytes;
+        try {
+            classBytes = new MLPEvaluatorGenerator(topology, className).generateClass();
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+
+        if (classBytes == null) {
+            LOGGER.log(Level.FINE, "The topology is too large for a generated MLP evaluator.");
+            return null;
+        }
+
+        try {
+            Class<?> evaluatorClass = defineClass(classBytes);
+            return (MLPEvaluator)evaluatorClass
+                    .getConstructor(MLPTopology.class)
+                    .newInstance(topology);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            LOGGER.log(Level.FINE, "The generated MLP evaluator is not available.", ex);
+            return null;
+        }
+    }
+
+    private static Class<?> defineClass(byte[] classBytes) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            Object noOptions = Array.newInstance(optionClass, 0);
+            Method defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass",
+                    byte[].class, boolean.class, noOptions.getClass());
+
+            Object hiddenLookup = invoke(defineHiddenClass, lookup, classBytes, true, noOptions);
+            return ((MethodHandles.Lookup)hiddenLookup).lookupClass();
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            // Hidden classes are not supported: Java 9 - 14
+            Method defineClass = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+            return (Class<?>)invoke(defineClass, lookup, classBytes);
+        }
+    }
+
+    private static Object invoke(Method method, Object obj, Object... args) throws ReflectiveOperationException {
+        try {
+            return method.invoke(obj, args);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof LinkageError) {
+                throw (LinkageError)cause;
+            }
+            throw ex;
+        }
+    }
+
+    private final MLPTopology topology;
+    private final String className;
+    private final boolean floatWeights;
+    private final ConstantPool constants;
+
+    private MLPEvaluatorGenerator(MLPTopology topology, String className) {
+        this.topology = topology;
+        this.className = className;
+        this.floatWeights = topology.getGenePrecision() == GenePrecision.FLOAT;
+        this.constants = new ConstantPool();
+    }
+
+    private String getWeightsDescriptor() {
+        return floatWeights ? "[F" : "[D";
+    }
+
+    private byte[] generateClass() throws IOException {
+        int thisClass = constants.classRef(className);
+        int superClass = constants.classRef(BASE_CLASS);
+
+        byte[] constructor = generateConstructor();
+        byte[] evaluateMethod = generateEvaluateMethod(thisClass);
+        if (evaluateMethod == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(result);
+        output.writeInt(0xCAFEBABE);
+        output.writeShort(0); // minor version
+        output.writeShort(51); // major version: Java 7
+        constants.writeTo(output);
+        output.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        output.writeShort(thisClass);
+        output.writeShort(superClass);
+        output.writeShort(0); // interfaces
+        output.writeShort(0); // fields
+        output.writeShort(2); // methods
+        output.write(constructor);
+        output.write(evaluateMethod);
+        output.writeShort(0); // attributes
+        output.flush();
+        return result.toByteArray();
+    }
+
+    private byte[] generateConstructor() throws IOException {
+        String descriptor = "(L" + TOPOLOGY_CLASS + ";)V";
+
+        CodeBuffer code = new CodeBuffer();
+        code.u1(ALOAD); code.u1(0);
+        code.u1(ALOAD); code.u1(1);
+        code.u1(INVOKESPECIAL);
+        code.u2(constants.methodRef(BASE_CLASS, "<init>", descriptor));
+        code.u1(RETURN);
+
+        return method(ACC_PUBLIC, "<init>", descriptor, 2, 2, code, null);
+    }
+
+    private byte[] generateEvaluateMethod(int thisClass) throws IOException {
+        int layerCount = topology.getLayerCount();
+        int outputLayerIndex = layerCount - 1;
+
+        CodeBuffer code = new CodeBuffer();
+
+        // The first local variable of each layer except the output layer.
+        int[] layerLocals = new int[outputLayerIndex];
+        int nextLocal = FIRST_VALUE_LOCAL;
+        for (int layerIndex = 0; layerIndex < outputLayerIndex; layerIndex++) {
+            layerLocals[layerIndex] = nextLocal;
+            nextLocal += 2 * topology.getLayerSize(layerIndex);
+        }
+        int valueCount = (nextLocal - FIRST_VALUE_LOCAL) / 2;
+
+        int inputCount = topology.getInputCount();
+        for (int i = 0; i < inputCount; i++) {
+            code.varInsn(ALOAD, LOCAL_INPUTS);
+            code.varInsn(ILOAD, LOCAL_INPUT_OFFSET);
+            pushInt(code, i);
+            code.u1(IADD);
+            code.u1(DALOAD);
+            code.varInsn(DSTORE, layerLocals[0] + 2 * i);
+        }
+
+        for (int layerIndex = 1; layerIndex < outputLayerIndex; layerIndex++) {
+            int size = topology.getLayerSize(layerIndex);
+            for (int i = 0; i < size; i++) {
+                generateNeuron(code, layerIndex, i, layerLocals[layerIndex - 1]);
+                code.varInsn(DSTORE, layerLocals[layerIndex] + 2 * i);
+            }
+        }
+
+        // Every local variable is assigned before the first branch, so the
+        // frame of every branch target is the same.
+        List<Integer> frameOffsets = new ArrayList<>();
+        int outputCount = topology.getOutputCount();
+        for (int i = 0; i < outputCount; i++) {
+            // if (firstOutput <= i && i < outputEnd)
+            code.varInsn(ILOAD, LOCAL_FIRST_OUTPUT);
+            pushInt(code, i);
+            int skipJump1 = code.jump(IF_ICMPGT);
+            pushInt(code, i);
+            code.varInsn(ILOAD, LOCAL_OUTPUT_END);
+            int skipJump2 = code.jump(IF_ICMPGE);
+
+            // outputs[outputOffset + i - firstOutput] = ...
+            code.varInsn(ALOAD, LOCAL_OUTPUTS);
+            code.varInsn(ILOAD, LOCAL_OUTPUT_OFFSET);
+            pushInt(code, i);
+            code.u1(IADD);
+            code.varInsn(ILOAD, LOCAL_FIRST_OUTPUT);
+            code.u1(ISUB);
+            generateNeuron(code, outputLayerIndex, i, layerLocals[outputLayerIndex - 1]);
+            code.u1(DASTORE);
+
+            int skipOffset = code.size();
+            code.patchJump(skipJump1, skipOffset);
+            code.patchJump(skipJump2, skipOffset);
+            frameOffsets.add(skipOffset);
+        }
+        code.u1(RETURN);
+
+        if (code.size() > MAX_CODE_LENGTH) {
+            return null;
+        }
+
+        byte[] stackMapTable = generateStackMapTable(thisClass, frameOffsets, valueCount);
+        String descriptor = "(" + getWeightsDescriptor() + "[DI[DIII)V";
+        return method(ACC_PROTECTED | ACC_FINAL, "evaluateOutputs", descriptor, MAX_STACK, nextLocal, code, stackMapTable);
+    }
+
+    private byte[] generateStackMapTable(int thisClass, List<Integer> frameOffsets, int valueCount) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(result);
+
+        output.writeShort(frameOffsets.size());
+
+        int prevOffset = -1;
+        for (int frameOffset: frameOffsets) {
+            int offsetDelta = prevOffset < 0 ? frameOffset : frameOffset - prevOffset - 1;
+            if (prevOffset < 0) {
+                output.writeByte(FULL_FRAME);
+                output.writeShort(offsetDelta);
+                output.writeShort(FIRST_VALUE_LOCAL + valueCount);
+                writeObjectItem(output, thisClass);
+                writeObjectItem(output, constants.classRef(getWeightsDescriptor()));
+                writeObjectItem(output, constants.classRef("[D"));
+                output.writeByte(ITEM_INTEGER);
+                writeObjectItem(output, constants.classRef("[D"));
+                output.writeByte(ITEM_INTEGER);
+                output.writeByte(ITEM_INTEGER);
+                output.writeByte(ITEM_INTEGER);
+                for (int i = 0; i < valueCount; i++) {
+                    output.writeByte(ITEM_DOUBLE);
+                }
+                output.writeShort(0); // stack
+            }
+            else {
+                output.writeByte(SAME_FRAME_EXTENDED);
+                output.writeShort(offsetDelta);
+            }
+            prevOffset = frameOffset;
+        }
+
+        output.flush();
+        return result.toByteArray();
+    }
+
+    private static void writeObjectItem(DataOutputStream output, int classRef) throws IOException {
+        output.writeByte(ITEM_OBJECT);
+        output.writeShort(classRef);
+    }
+
+    /**
+     * Generates the code leaving the output of the given neuron on the
+     * operand stack.
+     */
+    private void generateNeuron(CodeBuffer code, int layerIndex, int neuronIndex, int prevLayerLocal) {
+        Neuron activation = topology.getActivation(layerIndex);
+        int prevSize = topology.getLayerSize(layerIndex - 1);
+        int weightIndex = topology.getWeightOffset(layerIndex) + neuronIndex * (prevSize + 1);
+
+        // The operands of the activation function preceding the sum.
+        if (activation instanceof SigmoidNeuron) {
+            SigmoidNeuron sigmoid = (SigmoidNeuron)activation;
+            if (sigmoid.getApproximation() == SigmoidNeuron.Approximation.EXACT) {
+                // 1 / (1 + Math.exp(-lambda * sum))
+                code.u1(DCONST_1);
+                code.u1(DCONST_1);
+                pushDouble(code, -sigmoid.getLambda());
+            }
+            else {
+                // approximation.sigmoid(lambda * sum)
+                String approximationDescriptor = "L" + APPROXIMATION_CLASS + ";";
+                code.u1(GETSTATIC);
+                code.u2(constants.fieldRef(APPROXIMATION_CLASS,
+                        sigmoid.getApproximation().name(),
+                        approximationDescriptor));
+                pushDouble(code, sigmoid.getLambda());
+            }
+        }
+        else if (activation instanceof LinearNeuron) {
+            pushDouble(code, ((LinearNeuron)activation).getMultiplier());
+        }
+        else if (!(activation instanceof InputNeuron)) {
+            code.varInsn(ALOAD, LOCAL_THIS);
+            pushInt(code, layerIndex);
+        }
+
+        // sum = 0.0 + weights[bias] * BIAS_VALUE + weights[j] * inputs[j] ...
+        code.u1(DCONST_0);
+        loadWeight(code, weightIndex++);
+        if (MLPTopology.BIAS_VALUE != 1.0) {
+            pushDouble(code, MLPTopology.BIAS_VALUE);
+            code.u1(DMUL);
+        }
+        code.u1(DADD);
+        for (int j = 0; j < prevSize; j++) {
+            loadWeight(code, weightIndex++);
+            code.varInsn(DLOAD, prevLayerLocal + 2 * j);
+            code.u1(DMUL);
+            code.u1(DADD);
+        }
+
+        if (activation instanceof SigmoidNeuron) {
+            SigmoidNeuron sigmoid = (SigmoidNeuron)activation;
+            if (sigmoid.getApproximation() == SigmoidNeuron.Approximation.EXACT) {
+                code.u1(DMUL);
+                code.u1(INVOKESTATIC);
+                code.u2(constants.methodRef("java/lang/Math", "exp", "(D)D"));
+                code.u1(DADD);
+                code.u1(DDIV);
+            }
+            else {
+                code.u1(DMUL);
+                code.u1(INVOKEVIRTUAL);
+                code.u2(constants.methodRef(APPROXIMATION_CLASS, "sigmoid", "(D)D"));
+            }
+        }
+        else if (activation instanceof LinearNeuron) {
+            code.u1(DMUL);
+        }
+        else if (!(activation instanceof InputNeuron)) {
+            code.u1(INVOKEVIRTUAL);
+            code.u2(constants.methodRef(BASE_CLASS, "activate", "(ID)D"));
+        }
+    }
+
+    private void loadWeight(CodeBuffer code, int weightIndex) {
+        code.varInsn(ALOAD, LOCAL_WEIGHTS);
+        pushInt(code, weightIndex);
+        if (floatWeights) {
+            code.u1(FALOAD);
+            code.u1(F2D);
+        }
+        else {
+            code.u1(DALOAD);
+        }
+    }
+
+    private void pushInt(CodeBuffer code, int value) {
+        if (value >= -1 && value <= 5) {
+            code.u1(ICONST_0 + value);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.u1(BIPUSH);
+            code.u1(value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.u1(SIPUSH);
+            code.u2(value);
+        }
+        else {
+            code.u1(LDC_W);
+            code.u2(constants.intConstant(value));
+        }
+    }
+
+    private void pushDouble(CodeBuffer code, double value) {
+        code.u1(LDC2_W);
+        code.u2(constants.doubleConstant(value));
+    }
+
+    private byte[] method(
+            int access,
+            String name,
+            String descriptor,
+            int maxStack,
+            int maxLocals,
+            CodeBuffer code,
+            byte[] stackMapTable) throws IOException {
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(result);
+
+        output.writeShort(access);
+        output.writeShort(constants.utf8(name));
+        output.writeShort(constants.utf8(descriptor));
+        output.writeShort(1); // attributes
+
+        int stackMapTableLength = stackMapTable != null ? 6 + stackMapTable.length : 0;
+
+        output.writeShort(constants.utf8("Code"));
+        output.writeInt(12 + code.size() + stackMapTableLength);
+        output.writeShort(maxStack);
+        output.writeShort(maxLocals);
+        output.writeInt(code.size());
+        output.write(code.buffer, 0, code.size());
+        output.writeShort(0); // exception table
+        if (stackMapTable != null) {
+            output.writeShort(1);
+            output.writeShort(constants.utf8("StackMapTable"));
+            output.writeInt(stackMapTable.length);
+            output.write(stackMapTable);
+        }
+        else {
+            output.writeShort(0);
+        }
+
+        output.flush();
+        return result.toByteArray();
+    }
+
+    private static final class CodeBuffer {
+        private byte[] buffer = new byte[1024];
+        private int size = 0;
+
+        public int size() {
+            return size;
+        }
+
+        public void u1(int value) {
+            if (size >= buffer.length) {
+                byte[] newBuffer = new byte[2 * buffer.length];
+                System.arraycopy(buffer, 0, newBuffer, 0, size);
+                buffer = newBuffer;
+            }
+            buffer[size++] = (byte)value;
+        }
+
+        public void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        public void varInsn(int opcode, int local) {
+            if (local > 0xFF) {
+                u1(WIDE);
+                u1(opcode);
+                u2(local);
+            }
+            else {
+                u1(opcode);
+                u1(local);
+            }
+        }
+
+        /**
+         * Writes a jump instruction and returns its offset to be passed to
+         * {@link #patchJump(int, int) patchJump}.
+         */
+        public int jump(int opcode) {
+            int offset = size;
+            u1(opcode);
+            u2(0);
+            return offset;
+        }
+
+        public void patchJump(int jumpOffset, int targetOffset) {
+            int relative = targetOffset - jumpOffset;
+            buffer[jumpOffset + 1] = (byte)(relative >> 8);
+            buffer[jumpOffset + 2] = (byte)relative;
+        }
+    }
+
+    private static final class ConstantPool {
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_INTEGER = 3;
+        private static final int CONSTANT_DOUBLE = 6;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream output = new DataOutputStream(bytes);
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private int nextIndex = 1;
+
+        public int utf8(String value) {
+            String key = "U" + value;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = add(key, 1);
+                try {
+                    output.writeByte(CONSTANT_UTF8);
+                    output.writeUTF(value);
+                } catch (IOException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+            return index;
+        }
+
+        public int intConstant(int value) {
+            String key = "I" + value;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = add(key, 1);
+                writeEntry(CONSTANT_INTEGER, value);
+            }
+            return index;
+        }
+
+        public int doubleConstant(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            String key = "D" + bits;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                // Double constants take two entries.
+                index = add(key, 2);
+                writeEntry(CONSTANT_DOUBLE, (int)(bits >>> 32), (int)bits);
+            }
+            return index;
+        }
+
+        public int classRef(String internalName) {
+            String key = "C" + internalName;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                int nameIndex = utf8(internalName);
+                index = add(key, 1);
+                writeEntry(CONSTANT_CLASS, (short)nameIndex);
+            }
+            return index;
+        }
+
+        public int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+        }
+
+        public int methodRef(String owner, String name, String descriptor) {
+            return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            String key = "M" + tag + owner + "." + name + descriptor;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameAndTypeIndex = nameAndType(name, descriptor);
+                index = add(key, 1);
+                writeEntry(tag, (short)ownerIndex, (short)nameAndTypeIndex);
+            }
+            return index;
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            String key = "N" + name + ":" + descriptor;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                index = add(key, 1);
+                writeEntry(CONSTANT_NAME_AND_TYPE, (short)nameIndex, (short)descriptorIndex);
+            }
+            return index;
+        }
+
+        private int add(String key, int entryCount) {
+            int index = nextIndex;
+            nextIndex += entryCount;
+            indexes.put(key, index);
+            return index;
+        }
+
+        private void writeEntry(int tag, int... values) {
+            try {
+                output.writeByte(tag);
+                for (int value: values) {
+                    output.writeInt(value);
+                }
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+
+        private void writeEntry(int tag, short... values) {
+            try {
+                output.writeByte(tag);
+                for (short value: values) {
+                    output.writeShort(value);
+                }
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+
+        public void writeTo(DataOutputStream classOutput) throws IOException {
+            output.flush();
+            classOutput.writeShort(nextIndex);
+            bytes.writeTo(classOutput);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.kelemenattila.rectlife.neural;
+
+/**
+ * Defines the possible ways to calculate the outputs of an {@link MLP}.
+ *
+ * @see MLPTopology#MLPTopology(java.util.List, int, MLPEvaluatorType)
+ *
+ * @author Kelemen Attila
+ */
+public enum MLPEvaluatorType {
+    /**
+     * Calculates the outputs using plain loops. The summation order of this
+     * evaluator is the order of the genes.
+     */
+    SCALAR,
+
+    /**
+     * Calculates the weighted sums and the activation functions using the
+     * Java Vector API ({@code jdk.incubator.vector}). The summation order
+     * differs from {@link #SCALAR}, so the outputs might differ in the last
+     * bits.
+     * <P>
+     * This evaluator is only available if the vectorized classes were built
+     * (requires JDK 16 or later) and the {@code jdk.incubator.vector} module
+     * is added to the JVM (e.g.: {@code --add-modules jdk.incubator.vector}).
+     * If it is not available, {@link #SCALAR} is used instead.
+     */
+    VECTORIZED,
+
+    /**
+     * Calculates the outputs using a class generated at runtime for the
+     * particular topology. The generated code has no loops and the activation
+     * functions of the built-in neurons are inlined, so its outputs are the
+     * same as the outputs of {@link #SCALAR}.
+     * <P>
+     * This evaluator requires Java 9 or later (and preferably Java 15 or
+     * later to be able to generate hidden classes). If it is not available or
+     * the topology is too large to be worth generating code for,
+     * {@link #SCALAR} is used instead.
+     */
+    GENERATED
+}
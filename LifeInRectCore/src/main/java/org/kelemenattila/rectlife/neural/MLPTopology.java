@@ -0,0 +1,540 @@
+package org.kelemenattila.rectlife.neural;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ * Defines the layers of an {@link MLP} without its weights. Networks having
+ * the same topology can be evaluated by the
+ * {@link #evaluate(double[], double[], int, double[], int, int, int) evaluate}
+ * methods of the topology, given only their weights.
+ * <P>
+ * Instances of this class are immutable.
+ *
+ * @author Kelemen Attila
+ */
+public final class MLPTopology implements java.io.Serializable {
+    private static final long serialVersionUID = -1957437640285413563L;
+
+    private static final Logger LOGGER = Logger.getLogger(MLPTopology.class.getName());
+
+    private static final String VECTORIZED_EVALUATOR_CLASS_NAME
+            = "org.kelemenattila.rectlife.neural.VectorizedMLPEvaluator";
+
+    static final double BIAS_VALUE = 1.0;
+
+    // Index 0 is the input layer.
+    private final int[] layerSizes;
+    // Only the activation functions of these neurons are used.
+    // Index 0 is unused (null).
+    private final Neuron[] activations;
+    private final int[] weightOffsets;
+    private final int geneCount;
+    private final MLPEvaluatorType requestedEvaluatorType;
+    private final GenePrecision genePrecision;
+
+    private transient MLPEvaluator evaluator;
+    private transient MLPEvaluatorType evaluatorType;
+    // Networks of this topology are evaluated frequently by many threads,
+    // so each thread reuses its own buffers for the hidden layers.
+    private transient ThreadLocal<double[][]> threadLayerBuffers;
+
+    public MLPTopology(List<? extends MLP.LayerDescription> layerDescr, int inputCount) {
+        this(layerDescr, inputCount, MLPEvaluatorType.SCALAR);
+    }
+
+    /**
+     * Creates a new topology with the given layers (not including the input
+     * layer).
+     *
+     * @param evaluatorType the preferred way to calculate the outputs of the
+     *   networks. If the requested evaluator is not available, the
+     *   {@link MLPEvaluatorType#SCALAR scalar} evaluator is used.
+     */
+    public MLPTopology(
+            List<? extends MLP.LayerDescription> layerDescr,
+            int inputCount,
+            MLPEvaluatorType evaluatorType) {
+        this(layerDescr, inputCount, evaluatorType, GenePrecision.DOUBLE);
+    }
+
+    /**
+     * Creates a new topology with the given layers (not including the input
+     * layer).
+     *
+     * @param evaluatorType the preferred way to calculate the outputs of the
+     *   networks. If the requested evaluator is not available, the
+     *   {@link MLPEvaluatorType#SCALAR scalar} evaluator is used.
+     * @param genePrecision the precision in which the networks of this
+     *   topology store their weights
+     */
+    public MLPTopology(
+            List<? extends MLP.LayerDescription> layerDescr,
+            int inputCount,
+            MLPEvaluatorType evaluatorType,
+            GenePrecision genePrecision) {
+        ExceptionHelper.checkArgumentInRange(inputCount, 0, Integer.MAX_VALUE, "inputCount");
+        ExceptionHelper.checkNotNullArgument(evaluatorType, "evaluatorType");
+        ExceptionHelper.checkNotNullArgument(genePrecision, "genePrecision");
+
+        int layerCount = layerDescr.size() + 1;
+
+        this.layerSizes = new int[layerCount];
+        this.activations = new Neuron[layerCount];
+        this.weightOffsets = new int[layerCount];
+
+        int weightCount = 0;
+        int prevSize = inputCount;
+        int layerIndex = 0;
+
+        layerSizes[layerIndex++] = inputCount;
+        for (MLP.LayerDescription descr: layerDescr) {
+            int thisSize = descr.getLayerSize();
+            ExceptionHelper.checkArgumentInRange(thisSize, 0, Integer.MAX_VALUE, "layerSize");
+
+            layerSizes[layerIndex] = thisSize;
+            activations[layerIndex] = descr.getNeuronFactory().createNeuron();
+            weightOffsets[layerIndex] = weightCount;
+            weightCount += thisSize * (prevSize + 1);
+
+            prevSize = thisSize;
+            layerIndex++;
+        }
+
+        this.geneCount = weightCount;
+        this.requestedEvaluatorType = evaluatorType;
+        this.genePrecision = genePrecision;
+
+        initEvaluator();
+        initThreadLayerBuffers();
+    }
+
+    public int getInputCount() {
+        return layerSizes[0];
+    }
+
+    public int getOutputCount() {
+        return layerSizes[layerSizes.length - 1];
+    }
+
+    /**
+     * Returns the number of layers including the input layer.
+     */
+    public int getLayerCount() {
+        return layerSizes.length;
+    }
+
+    public int getLayerSize(int layerIndex) {
+        return layerSizes[layerIndex];
+    }
+
+    public int getGeneCount() {
+        return geneCount;
+    }
+
+    public GenePrecision getGenePrecision() {
+        return genePrecision;
+    }
+
+    /**
+     * Returns the type of the evaluator actually used to calculate the
+     * outputs of the networks. This might differ from the requested type, if
+     * the requested evaluator is not available.
+     */
+    public MLPEvaluatorType getEvaluatorType() {
+        return evaluatorType;
+    }
+
+    int getWeightOffset(int layerIndex) {
+        return weightOffsets[layerIndex];
+    }
+
+    Neuron getActivation(int layerIndex) {
+        return activations[layerIndex];
+    }
+
+    /**
+     * Returns buffers large enough to hold the output of each layer. The
+     * buffer of the input layer is also allocated.
+     */
+    double[][] createLayerBuffers() {
+        double[][] result = new double[layerSizes.length][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new double[layerSizes[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the outputs of the given (non-input) layer from the outputs
+     * of the previous layer.
+     *
+     * @param sums the array to store the weighted sums of the inputs of the
+     *   neurons. This argument can be {@code null}, if the sums are not needed.
+     */
+    void evaluateLayer(
+            int layerIndex,
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            double[] sums) {
+        evaluateLayer(layerIndex, weights,
+                inputs, inputOffset,
+                outputs, outputOffset,
+                0, layerSizes[layerIndex],
+                sums);
+    }
+
+    /**
+     * Calculates the outputs of the neurons of the given (non-input) layer
+     * having an index within {@code [firstNeuron, firstNeuron + neuronCount)}.
+     * The output of neuron {@code firstNeuron} is stored at
+     * {@code outputOffset} (and its sum at index 0 of {@code sums}).
+     */
+    void evaluateLayer(
+            int layerIndex,
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstNeuron,
+            int neuronCount,
+            double[] sums) {
+
+        Neuron activation = activations[layerIndex];
+        int prevSize = layerSizes[layerIndex - 1];
+        int inputEnd = inputOffset + prevSize;
+
+        int weightIndex = weightOffsets[layerIndex] + firstNeuron * (prevSize + 1);
+        for (int i = 0; i < neuronCount; i++) {
+            double sum = 0.0;
+            sum += weights[weightIndex++] * BIAS_VALUE;
+            for (int j = inputOffset; j < inputEnd; j++) {
+                sum += weights[weightIndex++] * inputs[j];
+            }
+
+            if (sums != null) {
+                sums[i] = sum;
+            }
+            outputs[outputOffset + i] = activation.activationFunction(sum);
+        }
+    }
+
+    /**
+     * Calculates the outputs of the given (non-input) layer from the outputs
+     * of the previous layer, using weights stored in {@code float} precision.
+     *
+     * @see #evaluateLayer(int, double[], double[], int, double[], int, double[])
+     */
+    void evaluateLayer(
+            int layerIndex,
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            double[] sums) {
+        evaluateLayer(layerIndex, weights,
+                inputs, inputOffset,
+                outputs, outputOffset,
+                0, layerSizes[layerIndex],
+                sums);
+    }
+
+    /**
+     * Calculates the outputs of the neurons of the given (non-input) layer
+     * having an index within {@code [firstNeuron, firstNeuron + neuronCount)},
+     * using weights stored in {@code float} precision.
+     *
+     * @see #evaluateLayer(int, double[], double[], int, double[], int, int, int, double[])
+     */
+    void evaluateLayer(
+            int layerIndex,
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstNeuron,
+            int neuronCount,
+            double[] sums) {
+
+        Neuron activation = activations[layerIndex];
+        int prevSize = layerSizes[layerIndex - 1];
+        int inputEnd = inputOffset + prevSize;
+
+        int weightIndex = weightOffsets[layerIndex] + firstNeuron * (prevSize + 1);
+        for (int i = 0; i < neuronCount; i++) {
+            double sum = 0.0;
+            sum += weights[weightIndex++] * BIAS_VALUE;
+            for (int j = inputOffset; j < inputEnd; j++) {
+                sum += weights[weightIndex++] * inputs[j];
+            }
+
+            if (sums != null) {
+                sums[i] = sum;
+            }
+            outputs[outputOffset + i] = activation.activationFunction(sum);
+        }
+    }
+
+    /**
+     * Calculates the outputs of the network having the given weights. Only
+     * the outputs having an index within
+     * {@code [firstOutput, firstOutput + outputCount)} are calculated.
+     *
+     * @param layerBuffers the buffers returned by {@link #createLayerBuffers()}
+     *   to store the outputs of the hidden layers
+     */
+    void evaluate(
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+        evaluator.evaluate(weights, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount, layerBuffers);
+    }
+
+    /**
+     * Calculates the outputs of the network having the given weights without
+     * creating an {@link MLP}. Only the outputs having an index within
+     * {@code [firstOutput, firstOutput + outputCount)} are calculated and
+     * stored starting at {@code outputOffset}.
+     * <P>
+     * This method does not allocate memory (apart from the buffers allocated
+     * once for each thread), so it is suitable to evaluate a large number of
+     * networks.
+     */
+    public void evaluate(
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount) {
+        checkEvaluateArgs(weights.length, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount);
+        evaluate(weights, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount, getThreadLayerBuffers());
+    }
+
+    /**
+     * Calculates the outputs of the network having the given weights stored
+     * in {@code float} precision without creating an {@link MLP}.
+     *
+     * @see #evaluate(double[], double[], int, double[], int, int, int)
+     */
+    public void evaluate(
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount) {
+        checkEvaluateArgs(weights.length, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount);
+        evaluate(weights, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount, getThreadLayerBuffers());
+    }
+
+    private void checkEvaluateArgs(
+            int weightCount,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount) {
+        int inputCount = getInputCount();
+        int allOutputCount = getOutputCount();
+
+        ExceptionHelper.checkArgumentInRange(weightCount, geneCount, geneCount, "weights.length");
+        ExceptionHelper.checkArgumentInRange(firstOutput, 0, allOutputCount, "firstOutput");
+        ExceptionHelper.checkArgumentInRange(outputCount, 0, allOutputCount - firstOutput, "outputCount");
+        ExceptionHelper.checkArgumentInRange(inputOffset, 0, inputs.length - inputCount, "inputOffset");
+        ExceptionHelper.checkArgumentInRange(outputOffset, 0, outputs.length - outputCount, "outputOffset");
+    }
+
+    /**
+     * Calculates the outputs of the network having the given weights stored
+     * in {@code float} precision. Only the outputs having an index within
+     * {@code [firstOutput, firstOutput + outputCount)} are calculated.
+     *
+     * @param layerBuffers the buffers returned by {@link #createLayerBuffers()}
+     *   to store the outputs of the hidden layers
+     */
+    void evaluate(
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+        evaluator.evaluate(weights, inputs, inputOffset, outputs, outputOffset, firstOutput, outputCount, layerBuffers);
+    }
+
+    /**
+     * Calculates a single output of the network having the given weights
+     * without creating an {@link MLP}. Only the hidden layers and the
+     * requested neuron of the output layer are evaluated.
+     * <P>
+     * The result is the same as the output calculated by the
+     * {@link MLPEvaluatorType#SCALAR scalar} evaluator.
+     */
+    public double evaluateOutput(double[] weights, double[] inputs, int outputIndex) {
+        ExceptionHelper.checkArgumentInRange(weights.length, geneCount, geneCount, "weights.length");
+        ExceptionHelper.checkArgumentInRange(inputs.length, getInputCount(), getInputCount(), "inputs.length");
+        ExceptionHelper.checkArgumentInRange(outputIndex, 0, getOutputCount() - 1, "outputIndex");
+
+        int outputLayerIndex = layerSizes.length - 1;
+        if (outputLayerIndex == 0) {
+            return inputs[outputIndex];
+        }
+
+        double[][] layerBuffers = getThreadLayerBuffers();
+        double[] layerInputs = inputs;
+        for (int layerIndex = 1; layerIndex < outputLayerIndex; layerIndex++) {
+            double[] layerOutputs = layerBuffers[layerIndex];
+            evaluateLayer(layerIndex, weights, layerInputs, 0, layerOutputs, 0, null);
+            layerInputs = layerOutputs;
+        }
+
+        double[] output = layerBuffers[outputLayerIndex];
+        evaluateLayer(outputLayerIndex, weights, layerInputs, 0, output, 0, outputIndex, 1, null);
+        return output[0];
+    }
+
+    /**
+     * Calculates a single output of the network having the given weights
+     * stored in {@code float} precision without creating an {@link MLP}.
+     *
+     * @see #evaluateOutput(double[], double[], int)
+     */
+    public double evaluateOutput(float[] weights, double[] inputs, int outputIndex) {
+        ExceptionHelper.checkArgumentInRange(weights.length, geneCount, geneCount, "weights.length");
+        ExceptionHelper.checkArgumentInRange(inputs.length, getInputCount(), getInputCount(), "inputs.length");
+        ExceptionHelper.checkArgumentInRange(outputIndex, 0, getOutputCount() - 1, "outputIndex");
+
+        int outputLayerIndex = layerSizes.length - 1;
+        if (outputLayerIndex == 0) {
+            return inputs[outputIndex];
+        }
+
+        double[][] layerBuffers = getThreadLayerBuffers();
+        double[] layerInputs = inputs;
+        for (int layerIndex = 1; layerIndex < outputLayerIndex; layerIndex++) {
+            double[] layerOutputs = layerBuffers[layerIndex];
+            evaluateLayer(layerIndex, weights, layerInputs, 0, layerOutputs, 0, null);
+            layerInputs = layerOutputs;
+        }
+
+        double[] output = layerBuffers[outputLayerIndex];
+        evaluateLayer(outputLayerIndex, weights, layerInputs, 0, output, 0, outputIndex, 1, null);
+        return output[0];
+    }
+
+    /**
+     * Calculates a single output of the network having the given weights
+     * when the first {@code unitInputCount} inputs are 1.0 and the rest of
+     * them are 0.0. No input array needs to be passed, the inputs are stored
+     * in the buffers of the calling thread.
+     *
+     * @see #evaluateOutput(double[], double[], int)
+     */
+    public double evaluateUnitInputOutput(double[] weights, int unitInputCount, int outputIndex) {
+        return evaluateOutput(weights, getUnitInputs(unitInputCount), outputIndex);
+    }
+
+    /**
+     * Calculates a single output of the network having the given weights
+     * stored in {@code float} precision when the first
+     * {@code unitInputCount} inputs are 1.0 and the rest of them are 0.0.
+     *
+     * @see #evaluateUnitInputOutput(double[], int, int)
+     */
+    public double evaluateUnitInputOutput(float[] weights, int unitInputCount, int outputIndex) {
+        return evaluateOutput(weights, getUnitInputs(unitInputCount), outputIndex);
+    }
+
+    /**
+     * Fills the input buffer of the calling thread with the inputs of
+     * {@code evaluateUnitInputOutput}. The evaluators never use this buffer.
+     */
+    private double[] getUnitInputs(int unitInputCount) {
+        double[] inputs = getThreadLayerBuffers()[0];
+        ExceptionHelper.checkArgumentInRange(unitInputCount, 0, inputs.length, "unitInputCount");
+
+        Arrays.fill(inputs, 0, unitInputCount, 1.0);
+        Arrays.fill(inputs, unitInputCount, inputs.length, 0.0);
+        return inputs;
+    }
+
+    private static MLPEvaluator tryCreateVectorizedEvaluator(MLPTopology topology) {
+        try {
+            Class<?> evaluatorClass = Class.forName(VECTORIZED_EVALUATOR_CLASS_NAME);
+            return (MLPEvaluator)evaluatorClass
+                    .getConstructor(MLPTopology.class)
+                    .newInstance(topology);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            // The evaluator was not built or jdk.incubator.vector is missing.
+            LOGGER.log(Level.FINE, "The vectorized MLP evaluator is not available.", ex);
+            return null;
+        }
+    }
+
+    private void initEvaluator() {
+        MLPEvaluator requestedEvaluator;
+        switch (requestedEvaluatorType) {
+            case VECTORIZED:
+                requestedEvaluator = tryCreateVectorizedEvaluator(this);
+                break;
+            case GENERATED:
+                requestedEvaluator = MLPEvaluatorGenerator.tryGenerate(this);
+                break;
+            default:
+                requestedEvaluator = null;
+                break;
+        }
+
+        if (requestedEvaluator != null) {
+            evaluator = requestedEvaluator;
+            evaluatorType = requestedEvaluatorType;
+        }
+        else {
+            evaluator = new ScalarMLPEvaluator(this);
+            evaluatorType = MLPEvaluatorType.SCALAR;
+        }
+    }
+
+    private void initThreadLayerBuffers() {
+        threadLayerBuffers = new ThreadLocal<double[][]>() {
+            @Override
+            protected double[][] initialValue() {
+                return createLayerBuffers();
+            }
+        };
+    }
+
+    /**
+     * Returns the layer buffers of the calling thread. The buffers must not
+     * be retained after the evaluation they were requested for.
+     */
+    double[][] getThreadLayerBuffers() {
+        return threadLayerBuffers.get();
+    }
+
+    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        initEvaluator();
+        initThreadLayerBuffers();
+    }
+}
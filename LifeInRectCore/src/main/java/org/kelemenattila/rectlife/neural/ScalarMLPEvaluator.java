@@ -0,0 +1,81 @@
+package org.kelemenattila.rectlife.neural;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+final class ScalarMLPEvaluator implements MLPEvaluator {
+    private final MLPTopology topology;
+
+    public ScalarMLPEvaluator(MLPTopology topology) {
+        this.topology = topology;
+    }
+
+    @Override
+    public void evaluate(
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+
+        int outputLayerIndex = topology.getLayerCount() - 1;
+        if (outputLayerIndex == 0) {
+            System.arraycopy(inputs, inputOffset + firstOutput, outputs, outputOffset, outputCount);
+            return;
+        }
+
+        double[] layerInputs = inputs;
+        int layerInputOffset = inputOffset;
+        for (int layerIndex = 1; layerIndex < outputLayerIndex; layerIndex++) {
+            double[] layerOutputs = layerBuffers[layerIndex];
+            topology.evaluateLayer(layerIndex, weights, layerInputs, layerInputOffset, layerOutputs, 0, null);
+
+            layerInputs = layerOutputs;
+            layerInputOffset = 0;
+        }
+
+        topology.evaluateLayer(outputLayerIndex, weights,
+                layerInputs, layerInputOffset,
+                outputs, outputOffset,
+                firstOutput, outputCount,
+                null);
+    }
+
+    @Override
+    public void evaluate(
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+
+        int outputLayerIndex = topology.getLayerCount() - 1;
+        if (outputLayerIndex == 0) {
+            System.arraycopy(inputs, inputOffset + firstOutput, outputs, outputOffset, outputCount);
+            return;
+        }
+
+        double[] layerInputs = inputs;
+        int layerInputOffset = inputOffset;
+        for (int layerIndex = 1; layerIndex < outputLayerIndex; layerIndex++) {
+            double[] layerOutputs = layerBuffers[layerIndex];
+            topology.evaluateLayer(layerIndex, weights, layerInputs, layerInputOffset, layerOutputs, 0, null);
+
+            layerInputs = layerOutputs;
+            layerInputOffset = 0;
+        }
+
+        topology.evaluateLayer(outputLayerIndex, weights,
+                layerInputs, layerInputOffset,
+                outputs, outputOffset,
+                firstOutput, outputCount,
+                null);
+    }
+}
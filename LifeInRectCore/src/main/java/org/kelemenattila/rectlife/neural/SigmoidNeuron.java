@@ -0,0 +1,164 @@
+package org.kelemenattila.rectlife.neural;
+
+import org.jtrim.utils.ExceptionHelper;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public final class SigmoidNeuron extends Neuron {
+    private static final long serialVersionUID = -7868860979610274646L;
+
+    /**
+     * Defines the possible ways to calculate the sigmoid function
+     * {@code 1 / (1 + e^(-t))}.
+     */
+    public enum Approximation {
+        /**
+         * Calculates the sigmoid function using {@code Math.exp}.
+         */
+        EXACT {
+            @Override
+            double sigmoid(double t) {
+                return 1 / (1 + Math.exp(-t));
+            }
+        },
+
+        /**
+         * Interpolates linearly between the values of the sigmoid function
+         * precalculated at every 1/64 within [-16, 16]. Outside this range,
+         * the value at the nearest end of the range is returned.
+         * <P>
+         * The maximum absolute error is 3.0e-6.
+         */
+        LOOKUP_TABLE {
+            @Override
+            double sigmoid(double t) {
+                return SigmoidTable.sigmoid(t);
+            }
+        },
+
+        /**
+         * Calculates {@code 0.5 + 0.5 * tanh(t / 2)}, where {@code tanh} is
+         * approximated by its (7, 6) Pade approximant. The argument of
+         * {@code tanh} is clamped to [-4.97, 4.97], which is near the point
+         * where the approximant reaches 1.0.
+         * <P>
+         * The maximum absolute error is 5.0e-5.
+         */
+        RATIONAL {
+            @Override
+            double sigmoid(double t) {
+                return rationalSigmoid(t);
+            }
+        };
+
+        abstract double sigmoid(double t);
+    }
+
+    static final double RATIONAL_TANH_LIMIT = 4.97;
+
+    private final double lambda;
+    private final Approximation approximation;
+
+    public SigmoidNeuron(double lambda) {
+        this(lambda, Approximation.EXACT);
+    }
+
+    public SigmoidNeuron(double lambda, Approximation approximation) {
+        ExceptionHelper.checkNotNullArgument(approximation, "approximation");
+
+        this.lambda = lambda;
+        this.approximation = approximation;
+    }
+
+    double getLambda() {
+        return lambda;
+    }
+
+    Approximation getApproximation() {
+        return approximation;
+    }
+
+    static double rationalSigmoid(double t) {
+        double x = 0.5 * t;
+        x = Math.max(-RATIONAL_TANH_LIMIT, Math.min(RATIONAL_TANH_LIMIT, x));
+
+        double x2 = x * x;
+        double numerator = x * (((x2 + 378.0) * x2 + 17325.0) * x2 + 135135.0);
+        double denominator = ((28.0 * x2 + 3150.0) * x2 + 62370.0) * x2 + 135135.0;
+        return 0.5 + 0.5 * (numerator / denominator);
+    }
+
+    @Override
+    protected double activationFunction(double x) {
+        if (approximation == Approximation.EXACT) {
+            return 1 / (1 + Math.exp(-lambda * x));
+        }
+        return approximation.sigmoid(lambda * x);
+    }
+
+    @Override
+    protected double dActivationFunction(double x) {
+        double ax = activationFunction(x);
+        return lambda * ax * (1 - ax);
+    }
+
+    private static final class SigmoidTable {
+        private static final double RANGE = 16.0;
+        private static final int STEPS_PER_UNIT = 64;
+        private static final double[] TABLE = createTable();
+
+        private static double[] createTable() {
+            int stepCount = (int)(2.0 * RANGE) * STEPS_PER_UNIT;
+            // One extra element, so that rounding errors near the upper end
+            // of the range cannot cause an out of bounds index.
+            double[] result = new double[stepCount + 2];
+            for (int i = 0; i <= stepCount; i++) {
+                double t = (double)i / STEPS_PER_UNIT - RANGE;
+                result[i] = 1 / (1 + Math.exp(-t));
+            }
+            result[stepCount + 1] = result[stepCount];
+            return result;
+        }
+
+        public static double sigmoid(double t) {
+            if (t <= -RANGE) {
+                return TABLE[0];
+            }
+            if (t >= RANGE) {
+                return TABLE[TABLE.length - 1];
+            }
+
+            // NaN falls through to here and results in NaN.
+            double pos = (t + RANGE) * STEPS_PER_UNIT;
+            int index = (int)pos;
+            double fraction = pos - index;
+
+            double value0 = TABLE[index];
+            double value1 = TABLE[index + 1];
+            return value0 + fraction * (value1 - value0);
+        }
+    }
+
+    public static final class Factory implements MLP.NeuronFactory {
+        private final double lambda;
+        private final Approximation approximation;
+
+        public Factory(double lambda) {
+            this(lambda, Approximation.EXACT);
+        }
+
+        public Factory(double lambda, Approximation approximation) {
+            ExceptionHelper.checkNotNullArgument(approximation, "approximation");
+
+            this.lambda = lambda;
+            this.approximation = approximation;
+        }
+
+        @Override
+        public SigmoidNeuron createNeuron() {
+            return new SigmoidNeuron(lambda, approximation);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.kelemenattila.rectlife;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.kelemenattila.rectlife.neural.GenePrecision;
+import org.kelemenattila.rectlife.neural.GenomeCodec;
+import org.kelemenattila.rectlife.neural.MLPTopology;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public class EntityTest {
+    private static final String[] ACTIONS = {"A", "B", "C", "D"};
+    private static final int INPUT_COUNT = 2;
+    private static final int NEURON_COUNT = 3;
+    // Larger than any of the action outputs, so that comparing an action
+    // output against them never selects the action.
+    private static final double OTHER_OUTPUT = 10.0;
+
+    private static MLPTopology createTopology(GenePrecision genePrecision) {
+        return Entity.createTopology(INPUT_COUNT, NEURON_COUNT, ACTIONS.length,
+                NetworkSettings.DEFAULT.withGenePrecision(genePrecision));
+    }
+
+    /**
+     * Creates an entity whose outputs do not depend on its inputs: Every
+     * weight is zero except for the biases of the output layer. The outputs
+     * are the appearance, the new mind state and then the outputs of the
+     * actions.
+     */
+    private static Entity<String> createEntity(MLPTopology topology, double... outputs) {
+        int outputCount = topology.getOutputCount();
+        assertEquals(outputCount, outputs.length);
+
+        int hiddenCount = topology.getLayerSize(topology.getLayerCount() - 2);
+        int rowLength = hiddenCount + 1;
+        double[] genes = new double[topology.getGeneCount()];
+        int outputLayerOffset = genes.length - outputCount * rowLength;
+        for (int i = 0; i < outputCount; i++) {
+            // The bias input is 1.0.
+            genes[outputLayerOffset + i * rowLength] = outputs[i];
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(Entity.getEncodedSize(topology));
+        buffer.putDouble(1.0);
+        buffer.putLong(0);
+        if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+            float[] floatGenes = new float[genes.length];
+            for (int i = 0; i < genes.length; i++) {
+                floatGenes[i] = (float)genes[i];
+            }
+            GenomeCodec.writeGenes(floatGenes, buffer);
+        }
+        else {
+            GenomeCodec.writeGenes(genes, buffer);
+        }
+        buffer.flip();
+
+        return Entity.readFrom(topology, ACTIONS, buffer);
+    }
+
+    private static void checkChosenAction(String expected, double... actionOutputs) {
+        for (GenePrecision precision: GenePrecision.values()) {
+            MLPTopology topology = createTopology(precision);
+
+            double[] outputs = new double[2 + actionOutputs.length];
+            outputs[0] = OTHER_OUTPUT;
+            outputs[1] = OTHER_OUTPUT;
+            System.arraycopy(actionOutputs, 0, outputs, 2, actionOutputs.length);
+
+            double[] neighbours = new double[INPUT_COUNT];
+            assertEquals(precision.name(), expected,
+                    createEntity(topology, outputs).thinkWithoutAging(neighbours));
+            assertEquals(precision.name(), expected,
+                    createEntity(topology, outputs).think(neighbours));
+
+            Entity.BatchThinker<String> thinker = new Entity.BatchThinker<>(topology, 2);
+            thinker.add(createEntity(topology, outputs), neighbours);
+            thinker.add(createEntity(topology, outputs), neighbours);
+            thinker.think();
+            assertEquals(precision.name(), expected, thinker.getAction(0));
+            assertEquals(precision.name(), expected, thinker.getAction(1));
+        }
+    }
+
+    @Test
+    public void testChoosesTheLargestActionOutput() {
+        checkChosenAction("A", 0.9, 0.5, 0.3, 0.2);
+        checkChosenAction("B", 0.1, 0.5, 0.3, 0.2);
+        checkChosenAction("C", -1.0, -2.0, 0.25, -0.5);
+        checkChosenAction("D", -1.0, -2.0, -3.0, 4.0);
+    }
+
+    @Test
+    public void testTiesChooseTheFirstAction() {
+        checkChosenAction("A", 0.25, 0.25, 0.25, 0.25);
+        checkChosenAction("B", 0.25, 0.5, 0.5, 0.25);
+        checkChosenAction("C", 0.25, 0.125, 0.5, 0.5);
+    }
+}
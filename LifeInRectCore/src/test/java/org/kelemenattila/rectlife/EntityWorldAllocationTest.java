@@ -0,0 +1,93 @@
+package org.kelemenattila.rectlife;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public class EntityWorldAllocationTest {
+    private static final int WORLD_SIZE = 100;
+    private static final int WARM_UP_STEPS = 200;
+    private static final int MEASURED_STEPS = 50;
+
+    // The bytes allocated for a newborn apart from its genes: The entity and
+    // the header of its gene array.
+    private static final long NEWBORN_OVERHEAD_BYTES = 96;
+    // Measuring the allocated bytes allocates a few arrays itself.
+    private static final long MEASUREMENT_SLACK_BYTES = 8 * 1024;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean)bean;
+        if (!result.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        result.setThreadAllocatedMemoryEnabled(true);
+        return result;
+    }
+
+    /**
+     * Returns the bytes allocated so far by every live thread, including the
+     * threads of the pool.
+     */
+    private static long getTotalAllocatedBytes(com.sun.management.ThreadMXBean bean) {
+        long result = 0;
+        for (long allocated: bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (allocated > 0) {
+                result += allocated;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testStepWorldOnlyAllocatesNewborns() {
+        com.sun.management.ThreadMXBean bean = getThreadBean();
+        assumeTrue(bean != null);
+
+        EntityWorld world = new EntityWorld(pool, WORLD_SIZE, WORLD_SIZE, NetworkSettings.DEFAULT, 42);
+        for (int i = 0; i < WARM_UP_STEPS; i++) {
+            world.stepWorld();
+        }
+
+        WorldMetrics metrics = world.getMetrics();
+        long birthsBefore = metrics.getBirthCount();
+        long allocatedBefore = getTotalAllocatedBytes(bean);
+        for (int i = 0; i < MEASURED_STEPS; i++) {
+            world.stepWorld();
+        }
+        long allocated = getTotalAllocatedBytes(bean) - allocatedBefore;
+        long births = metrics.getBirthCount() - birthsBefore;
+
+        int geneCount = Entity.createTopology(8, 10, EntityAction.values().length, NetworkSettings.DEFAULT)
+                .getGeneCount();
+        long newbornBytes = births * (8L * geneCount + NEWBORN_OVERHEAD_BYTES);
+
+        assertTrue("Allocated " + allocated + " bytes for " + births + " newborns (" + newbornBytes + " bytes)",
+                allocated <= newbornBytes + MEASUREMENT_SLACK_BYTES);
+    }
+}
@@ -0,0 +1,190 @@
+package org.kelemenattila.rectlife;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public class EntityWorldFightTest {
+    private static final int WORLD_SIZE = 8;
+    private static final long SEED = 42;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Creates a world having entities only at the given cells and runs the
+     * first phase of its first step. The chosen attacks are then cleared,
+     * so that the test can set them.
+     */
+    private static EntityWorld createFightWorld(
+            ForkJoinPool pool,
+            long seed,
+            EdgeMode edgeMode,
+            int[][] entityCells) {
+        EntityWorld world = new EntityWorld(pool, WORLD_SIZE, WORLD_SIZE, NetworkSettings.DEFAULT, seed, edgeMode);
+        for (int y = 0; y < WORLD_SIZE; y++) {
+            for (int x = 0; x < WORLD_SIZE; x++) {
+                if (!contains(entityCells, x, y)) {
+                    world.removeEntity(x, y);
+                }
+            }
+        }
+
+        assertEquals(StepPhase.CHOOSE_ACTIONS, world.getNextPhase());
+        world.runNextPhase();
+
+        for (int y = 0; y < WORLD_SIZE; y++) {
+            for (int x = 0; x < WORLD_SIZE; x++) {
+                world.setChosenAttack(x, y, null);
+            }
+        }
+        return world;
+    }
+
+    private static boolean contains(int[][] cells, int x, int y) {
+        for (int[] cell: cells) {
+            if (cell[0] == x && cell[1] == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void resolveFights(EntityWorld world, double defenderChanceMultiplier) {
+        world.setDefenderChanceMultiplier(defenderChanceMultiplier);
+
+        assertEquals(StepPhase.RESOLVE_FIGHTS, world.getNextPhase());
+        world.runNextPhase();
+    }
+
+    @Test
+    public void testDefenderDiesWithoutChance() {
+        EntityWorld world = createFightWorld(pool, SEED, EdgeMode.BOUNDED, new int[][]{{3, 3}, {4, 3}});
+        world.setChosenAttack(3, 3, EntityAction.AttackPosition.RIGHT);
+        resolveFights(world, 0.0);
+
+        assertTrue(world.hasEntity(3, 3));
+        assertFalse(world.hasEntity(4, 3));
+        assertEquals(1, world.getMetrics().getDefenderFightDeathCount());
+        assertEquals(0, world.getMetrics().getAttackerFightDeathCount());
+    }
+
+    @Test
+    public void testMutualAttackKillsBoth() {
+        EntityWorld world = createFightWorld(pool, SEED, EdgeMode.BOUNDED, new int[][]{{3, 3}, {4, 3}});
+        world.setChosenAttack(3, 3, EntityAction.AttackPosition.RIGHT);
+        world.setChosenAttack(4, 3, EntityAction.AttackPosition.LEFT);
+        resolveFights(world, 0.0);
+
+        assertFalse(world.hasEntity(3, 3));
+        assertFalse(world.hasEntity(4, 3));
+        assertEquals(2, world.getMetrics().getDefenderFightDeathCount());
+        assertEquals(0, world.getMetrics().getAttackerFightDeathCount());
+    }
+
+    /**
+     * Attacks the entity at (3, 3) from its left and right and returns the
+     * survivors: Bit 0, 1 and 2 is set if the entity at (2, 3), (3, 3) and
+     * (4, 3) survived respectively.
+     */
+    private static int resolveTwoAttackers(ForkJoinPool pool, long seed, double defenderChanceMultiplier) {
+        EntityWorld world = createFightWorld(pool, seed, EdgeMode.BOUNDED, new int[][]{{2, 3}, {3, 3}, {4, 3}});
+        world.setChosenAttack(2, 3, EntityAction.AttackPosition.RIGHT);
+        world.setChosenAttack(4, 3, EntityAction.AttackPosition.LEFT);
+        resolveFights(world, defenderChanceMultiplier);
+
+        int survivors = 0;
+        for (int x = 2; x <= 4; x++) {
+            if (world.hasEntity(x, 3)) {
+                survivors++;
+            }
+        }
+        assertEquals("Seed " + seed, 2, survivors);
+        assertEquals(1, world.getMetrics().getDefenderFightDeathCount()
+                + world.getMetrics().getAttackerFightDeathCount());
+
+        return (world.hasEntity(2, 3) ? 1 : 0) | (world.hasEntity(3, 3) ? 2 : 0) | (world.hasEntity(4, 3) ? 4 : 0);
+    }
+
+    @Test
+    public void testMultipleAttackersKillExactlyOne() {
+        ForkJoinPool singleThreadPool = new ForkJoinPool(1);
+        try {
+            boolean[] killedAttackers = new boolean[2];
+            for (long seed = 1; seed <= 20; seed++) {
+                // The defender has no chance to die with three participants.
+                int survivors = resolveTwoAttackers(pool, seed, 3.0);
+                assertTrue("Seed " + seed, (survivors & 2) != 0);
+                killedAttackers[(survivors & 1) != 0 ? 1 : 0] = true;
+
+                // The victim only depends on the seed.
+                assertEquals("Seed " + seed, survivors, resolveTwoAttackers(singleThreadPool, seed, 3.0));
+
+                int survivorsWithChance = resolveTwoAttackers(pool, seed, 1.0);
+                assertEquals("Seed " + seed, survivorsWithChance, resolveTwoAttackers(singleThreadPool, seed, 1.0));
+            }
+            assertTrue("Both attackers can die", killedAttackers[0] && killedAttackers[1]);
+        } finally {
+            singleThreadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testAttackOnEmptyCellKillsNobody() {
+        EntityWorld world = createFightWorld(pool, SEED, EdgeMode.BOUNDED, new int[][]{{3, 3}});
+        world.setChosenAttack(3, 3, EntityAction.AttackPosition.RIGHT);
+        resolveFights(world, 0.0);
+
+        assertTrue(world.hasEntity(3, 3));
+        assertFalse(world.hasEntity(4, 3));
+        assertEquals(0, world.getMetrics().getDefenderFightDeathCount());
+        assertEquals(0, world.getMetrics().getAttackerFightDeathCount());
+    }
+
+    @Test
+    public void testBoundedIsTheDefaultEdgeMode() {
+        EntityWorld world = new EntityWorld(pool, WORLD_SIZE, WORLD_SIZE, NetworkSettings.DEFAULT, SEED);
+        assertEquals(EdgeMode.BOUNDED, world.getEdgeMode());
+    }
+
+    @Test
+    public void testCornerAttackWrapsInTorus() {
+        int last = WORLD_SIZE - 1;
+        EntityWorld world = createFightWorld(pool, SEED, EdgeMode.TORUS, new int[][]{{0, 0}, {last, last}});
+        world.setChosenAttack(0, 0, EntityAction.AttackPosition.TOP_LEFT);
+        resolveFights(world, 0.0);
+
+        assertTrue(world.hasEntity(0, 0));
+        assertFalse(world.hasEntity(last, last));
+        assertEquals(1, world.getMetrics().getDefenderFightDeathCount());
+    }
+
+    @Test
+    public void testCornerAttackHitsNothingWhenBounded() {
+        int last = WORLD_SIZE - 1;
+        EntityWorld world = createFightWorld(pool, SEED, EdgeMode.BOUNDED, new int[][]{{0, 0}, {last, last}});
+        world.setChosenAttack(0, 0, EntityAction.AttackPosition.TOP_LEFT);
+        resolveFights(world, 0.0);
+
+        assertTrue(world.hasEntity(0, 0));
+        assertTrue(world.hasEntity(last, last));
+        assertEquals(0, world.getMetrics().getDefenderFightDeathCount());
+        assertEquals(0, world.getMetrics().getAttackerFightDeathCount());
+    }
+}
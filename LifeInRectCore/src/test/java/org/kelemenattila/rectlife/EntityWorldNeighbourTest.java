@@ -0,0 +1,78 @@
+package org.kelemenattila.rectlife;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public class EntityWorldNeighbourTest {
+    private static final int WORLD_SIZE = 8;
+    private static final long SEED = 42;
+    private static final int CENTER = 3;
+
+    // The neighbours in the order of the inputs of the entities.
+    private static final int[] NEIGHBOUR_DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] NEIGHBOUR_DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private EntityWorld createWorld() {
+        return new EntityWorld(pool, WORLD_SIZE, WORLD_SIZE, NetworkSettings.DEFAULT, SEED, EdgeMode.BOUNDED);
+    }
+
+    private static double[] getNeighbourInputs(EntityWorld world) {
+        double[] result = new double[NEIGHBOUR_DX.length];
+        // Every input must be written.
+        Arrays.fill(result, Double.NaN);
+        world.getNeighbourAppearances(CENTER, CENTER, result);
+        return result;
+    }
+
+    @Test
+    public void testEveryNeighbourHasItsOwnInput() {
+        double[] inputs = getNeighbourInputs(createWorld());
+        for (int i = 0; i < inputs.length; i++) {
+            assertFalse("Input " + i, Double.isNaN(inputs[i]));
+            // The appearances of the random entities differ.
+            assertTrue("Input " + i, inputs[i] != 0.0);
+        }
+    }
+
+    @Test
+    public void testInputsFollowTheNeighbourOrder() {
+        for (int neighbour = 0; neighbour < NEIGHBOUR_DX.length; neighbour++) {
+            EntityWorld world = createWorld();
+            double[] allInputs = getNeighbourInputs(world);
+
+            // Keep only the given neighbour of the center cell.
+            for (int i = 0; i < NEIGHBOUR_DX.length; i++) {
+                if (i != neighbour) {
+                    world.removeEntity(CENTER + NEIGHBOUR_DX[i], CENTER + NEIGHBOUR_DY[i]);
+                }
+            }
+
+            double[] inputs = getNeighbourInputs(world);
+            for (int i = 0; i < inputs.length; i++) {
+                double expected = i == neighbour ? allInputs[i] : 0.0;
+                assertEquals("Neighbour " + neighbour + ", input " + i, expected, inputs[i], 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.kelemenattila.rectlife;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kelemenattila.rectlife.neural.GenePrecision;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public class EntityWorldPopulationTest {
+    private static final int WORLD_SIZE = 24;
+    private static final int STEP_COUNT = 10;
+    private static final long SEED = 42;
+
+    // The offsets of the header fields written by writePopulation.
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private EntityWorld createWorld(int width, GenePrecision precision, long seed) {
+        NetworkSettings settings = NetworkSettings.DEFAULT.withGenePrecision(precision);
+        return new EntityWorld(pool, width, WORLD_SIZE, settings, seed);
+    }
+
+    private EntityWorld createSteppedWorld(GenePrecision precision) {
+        EntityWorld world = createWorld(WORLD_SIZE, precision, SEED);
+        for (int i = 0; i < STEP_COUNT; i++) {
+            world.stepWorld();
+        }
+        return world;
+    }
+
+    private static byte[] writePopulation(EntityWorld world) {
+        int size = world.getPopulationSize();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        world.writePopulation(buffer);
+        assertEquals(size, buffer.position());
+        return buffer.array();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (GenePrecision precision: GenePrecision.values()) {
+            EntityWorld world = createSteppedWorld(precision);
+            byte[] population = writePopulation(world);
+
+            EntityWorld readWorld = createWorld(WORLD_SIZE, precision, SEED + 1);
+            readWorld.readPopulation(ByteBuffer.wrap(population));
+
+            assertArrayEquals(precision.name(), population, writePopulation(readWorld));
+            assertEquals(precision.name(),
+                    world.getMetrics().getPopulation(), readWorld.getMetrics().getPopulation());
+        }
+    }
+
+    /**
+     * Reads the given population into the given world, expecting the read to
+     * be rejected without changing the world.
+     */
+    private static void checkRejected(EntityWorld world, byte[] population) {
+        byte[] original = writePopulation(world);
+        try {
+            world.readPopulation(ByteBuffer.wrap(population));
+            fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+        assertArrayEquals(original, writePopulation(world));
+    }
+
+    @Test
+    public void testRejectsBadMagic() {
+        byte[] population = writePopulation(createSteppedWorld(GenePrecision.DOUBLE));
+        ByteBuffer.wrap(population).putInt(MAGIC_OFFSET, 0x12345678);
+
+        checkRejected(createWorld(WORLD_SIZE, GenePrecision.DOUBLE, SEED), population);
+    }
+
+    @Test
+    public void testRejectsBadVersion() {
+        byte[] population = writePopulation(createSteppedWorld(GenePrecision.DOUBLE));
+        ByteBuffer buffer = ByteBuffer.wrap(population);
+        buffer.putShort(VERSION_OFFSET, (short)(buffer.getShort(VERSION_OFFSET) + 1));
+
+        checkRejected(createWorld(WORLD_SIZE, GenePrecision.DOUBLE, SEED), population);
+    }
+
+    @Test
+    public void testRejectsTopologyMismatch() {
+        byte[] population = writePopulation(createSteppedWorld(GenePrecision.DOUBLE));
+        checkRejected(createWorld(WORLD_SIZE, GenePrecision.FLOAT, SEED), population);
+    }
+
+    @Test
+    public void testRejectsSizeMismatch() {
+        byte[] population = writePopulation(createSteppedWorld(GenePrecision.DOUBLE));
+        checkRejected(createWorld(WORLD_SIZE + 1, GenePrecision.DOUBLE, SEED), population);
+    }
+}
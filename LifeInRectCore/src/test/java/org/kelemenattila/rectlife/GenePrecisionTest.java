@@ -0,0 +1,86 @@
+package org.kelemenattila.rectlife;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kelemenattila.rectlife.neural.GenePrecision;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that storing the genes in {@code float} precision does not change
+ * the statistics of the world compared to {@code double} precision. The
+ * worlds may diverge due to rounding, so only the statistics are compared.
+ *
+ * @author Kelemen Attila
+ */
+public class GenePrecisionTest {
+    private static final int WORLD_SIZE = 48;
+    private static final int STEP_COUNT = 100;
+    private static final long[] SEEDS = {1, 2, 3};
+
+    private static final double POPULATION_TOLERANCE = 0.05;
+    private static final double ACTION_FRACTION_TOLERANCE = 0.02;
+    private static final double ATTACK_TOLERANCE = 0.05;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private WorldMetrics runWorld(long seed, GenePrecision precision) {
+        NetworkSettings settings = NetworkSettings.DEFAULT.withGenePrecision(precision);
+        EntityWorld world = new EntityWorld(pool, WORLD_SIZE, WORLD_SIZE, settings, seed);
+        for (int i = 0; i < STEP_COUNT; i++) {
+            world.stepWorld();
+        }
+        return world.getMetrics();
+    }
+
+    private static long getTotalActionCount(WorldMetrics metrics) {
+        long result = 0;
+        for (EntityAction action: EntityAction.values()) {
+            result += metrics.getActionCount(action);
+        }
+        return result;
+    }
+
+    private static void assertRelativelyClose(String name, long expected, long actual, double tolerance) {
+        double difference = Math.abs(actual - expected);
+        assertTrue(name + ": " + expected + " vs " + actual,
+                difference <= tolerance * Math.max(1, expected));
+    }
+
+    @Test
+    public void testFloatMatchesDoubleStatistics() {
+        for (long seed: SEEDS) {
+            WorldMetrics doubleMetrics = runWorld(seed, GenePrecision.DOUBLE);
+            WorldMetrics floatMetrics = runWorld(seed, GenePrecision.FLOAT);
+
+            assertRelativelyClose("Population (seed " + seed + ")",
+                    doubleMetrics.getPopulation(), floatMetrics.getPopulation(), POPULATION_TOLERANCE);
+            assertRelativelyClose("Attacks (seed " + seed + ")",
+                    doubleMetrics.getAttackCount(), floatMetrics.getAttackCount(), ATTACK_TOLERANCE);
+
+            double doubleTotal = getTotalActionCount(doubleMetrics);
+            double floatTotal = getTotalActionCount(floatMetrics);
+            assertTrue(doubleTotal > 0);
+            assertTrue(floatTotal > 0);
+
+            for (EntityAction action: EntityAction.values()) {
+                double doubleFraction = doubleMetrics.getActionCount(action) / doubleTotal;
+                double floatFraction = floatMetrics.getActionCount(action) / floatTotal;
+                assertEquals(action + " (seed " + seed + ")",
+                        doubleFraction, floatFraction, ACTION_FRACTION_TOLERANCE);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.kelemenattila.rectlife.neural;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assume;
+import org.junit.Test;
+import org.kelemenattila.rectlife.Entity;
+import org.kelemenattila.rectlife.EntityAction;
+import org.kelemenattila.rectlife.NetworkSettings;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public class MLPTest {
+    private static final int INPUT_COUNT = 5;
+    private static final int OUTPUT_COUNT = 3;
+    private static final double ALPHA = 0.1;
+
+    private static MLPTopology createTopology(GenePrecision genePrecision) {
+        List<MLP.LayerDescription> layers = Arrays.asList(
+                new MLP.LayerDescription(new SigmoidNeuron.Factory(1.0), 7),
+                new MLP.LayerDescription(new SigmoidNeuron.Factory(1.0), 4),
+                new MLP.LayerDescription(new LinearNeuron.Factory(1.0), OUTPUT_COUNT));
+        return new MLPTopology(layers, INPUT_COUNT, MLPEvaluatorType.SCALAR, genePrecision);
+    }
+
+    private static MLPTopology createTopology(
+            MLPEvaluatorType evaluatorType,
+            GenePrecision genePrecision,
+            SigmoidNeuron.Approximation approximation) {
+        // The layers are not multiples of the vector sizes, so that the
+        // remaining elements are evaluated as well.
+        List<MLP.LayerDescription> layers = Arrays.asList(
+                new MLP.LayerDescription(new SigmoidNeuron.Factory(1.0, approximation), 19),
+                new MLP.LayerDescription(new SigmoidNeuron.Factory(1.0, approximation), 6),
+                new MLP.LayerDescription(new LinearNeuron.Factory(1.0), 13));
+        return new MLPTopology(layers, 11, evaluatorType, genePrecision);
+    }
+
+    private static float[] toFloatArray(double[] array) {
+        float[] result = new float[array.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (float)array[i];
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the given outputs of a network having the given topology for
+     * each input in {@code inputs}, using the same (random) genes for the
+     * given seed.
+     */
+    private static double[] evaluateOutputs(
+            MLPTopology topology,
+            long seed,
+            double[][] inputs,
+            int firstOutput,
+            int outputCount) {
+        double[] genes = randomArray(new Random(seed), topology.getGeneCount());
+        float[] floatGenes = toFloatArray(genes);
+
+        double[] result = new double[inputs.length * outputCount];
+        for (int i = 0; i < inputs.length; i++) {
+            if (topology.getGenePrecision() == GenePrecision.FLOAT) {
+                topology.evaluate(floatGenes, inputs[i], 0, result, i * outputCount, firstOutput, outputCount);
+            }
+            else {
+                topology.evaluate(genes, inputs[i], 0, result, i * outputCount, firstOutput, outputCount);
+            }
+        }
+        return result;
+    }
+
+    private static double[][] randomInputs(Random random, int count, int inputCount) {
+        double[][] result = new double[count][];
+        for (int i = 0; i < result.length; i++) {
+            // Larger than the genes, so that the sigmoids are saturated
+            // sometimes.
+            result[i] = randomArray(random, inputCount);
+            for (int j = 0; j < result[i].length; j++) {
+                result[i][j] *= 4.0;
+            }
+        }
+        return result;
+    }
+
+    private static long[] toBits(double[] array) {
+        long[] result = new long[array.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Double.doubleToRawLongBits(array[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the outputs calculated by the given evaluator with the outputs
+     * of the scalar evaluator for every gene precision and sigmoid
+     * approximation and for all and some of the outputs. A zero tolerance
+     * requires the same bits.
+     */
+    private static void checkSameAsScalar(MLPEvaluatorType evaluatorType, double tolerance) {
+        for (GenePrecision precision: GenePrecision.values()) {
+            for (SigmoidNeuron.Approximation approximation: SigmoidNeuron.Approximation.values()) {
+                MLPTopology scalar = createTopology(MLPEvaluatorType.SCALAR, precision, approximation);
+                MLPTopology tested = createTopology(evaluatorType, precision, approximation);
+                Assume.assumeTrue(tested.getEvaluatorType() == evaluatorType);
+
+                int outputCount = tested.getOutputCount();
+                double[][] inputs = randomInputs(new Random(44), 20, tested.getInputCount());
+                int[][] outputRanges = {{0, outputCount}, {0, 1}, {2, 7}, {outputCount - 1, 1}};
+                for (int[] range: outputRanges) {
+                    String message = precision + ", " + approximation + ", outputs " + range[0] + "+" + range[1];
+                    for (long seed = 1; seed <= 5; seed++) {
+                        double[] expected = evaluateOutputs(scalar, seed, inputs, range[0], range[1]);
+                        double[] outputs = evaluateOutputs(tested, seed, inputs, range[0], range[1]);
+                        if (tolerance == 0.0) {
+                            assertArrayEquals(message, toBits(expected), toBits(outputs));
+                        }
+                        else {
+                            assertArrayEquals(message, expected, outputs, tolerance);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testVectorizedNearScalar() {
+        // Skipped, unless the vectorized evaluator was built and the JVM has
+        // the jdk.incubator.vector module.
+        checkSameAsScalar(MLPEvaluatorType.VECTORIZED, 1e-9);
+    }
+
+    @Test
+    public void testGeneratedSameAsScalar() {
+        // Skipped, if classes cannot be generated on this JVM.
+        checkSameAsScalar(MLPEvaluatorType.GENERATED, 0.0);
+    }
+
+    @Test
+    public void testEntityTopologyIsGenerated() {
+        // Skipped, if classes cannot be generated on this JVM at all.
+        MLPTopology smallTopology = createTopology(
+                MLPEvaluatorType.GENERATED, GenePrecision.DOUBLE, SigmoidNeuron.Approximation.EXACT);
+        Assume.assumeTrue(smallTopology.getEvaluatorType() == MLPEvaluatorType.GENERATED);
+
+        for (GenePrecision precision: GenePrecision.values()) {
+            NetworkSettings settings = new NetworkSettings(
+                    MLPEvaluatorType.GENERATED, precision, SigmoidNeuron.Approximation.EXACT);
+            MLPTopology topology = Entity.createTopology(8, 10, EntityAction.values().length, settings);
+            assertEquals(precision.name(), MLPEvaluatorType.GENERATED, topology.getEvaluatorType());
+        }
+    }
+
+    private static double[] randomArray(Random random, int length) {
+        double[] result = new double[length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = 2.0 * random.nextDouble() - 1.0;
+        }
+        return result;
+    }
+
+    @Test
+    public void testBatchOfOneEqualsTrain() {
+        for (GenePrecision precision: GenePrecision.values()) {
+            MLPTopology topology = createTopology(precision);
+            Random random = new Random(42);
+            double[] genes = randomArray(random, topology.getGeneCount());
+
+            MLP trained = new MLP(topology, genes);
+            MLP batchTrained = new MLP(topology, genes);
+
+            for (int i = 0; i < 10; i++) {
+                double[] inputs = randomArray(random, INPUT_COUNT);
+                double[] expOutputs = randomArray(random, OUTPUT_COUNT);
+
+                double error = trained.train(ALPHA, inputs, expOutputs);
+                double batchError = batchTrained.trainBatch(ALPHA, inputs, expOutputs, 1);
+                assertEquals(precision.name(), error, batchError, 0.0);
+            }
+
+            assertArrayEquals(precision.name(), trained.getGenes(), batchTrained.getGenes(), 0.0);
+        }
+    }
+
+    @Test
+    public void testBatchWithPoolEqualsWithoutPool() {
+        int sampleCount = 100;
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (GenePrecision precision: GenePrecision.values()) {
+                MLPTopology topology = createTopology(precision);
+                Random random = new Random(43);
+                double[] genes = randomArray(random, topology.getGeneCount());
+
+                MLP network = new MLP(topology, genes);
+                MLP poolNetwork = new MLP(topology, genes);
+
+                for (int i = 0; i < 5; i++) {
+                    double[] inputs = randomArray(random, sampleCount * INPUT_COUNT);
+                    double[] expOutputs = randomArray(random, sampleCount * OUTPUT_COUNT);
+
+                    double error = network.trainBatch(ALPHA, inputs, expOutputs, sampleCount);
+                    double poolError = poolNetwork.trainBatch(pool, ALPHA, inputs, expOutputs, sampleCount);
+                    assertEquals(precision.name(), error, poolError, 0.0);
+                }
+
+                assertArrayEquals(precision.name(), network.getGenes(), poolNetwork.getGenes(), 0.0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.kelemenattila.rectlife.neural;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Kelemen Attila
+ */
+public class SigmoidNeuronTest {
+    private static final double LOOKUP_TABLE_MAX_ERROR = 3.0e-6;
+    private static final double RATIONAL_MAX_ERROR = 5.0e-5;
+
+    // The sampled inputs cover both the range where the approximations are
+    // calculated and the range where they are clamped.
+    private static final double SAMPLE_RANGE = 40.0;
+    private static final int SAMPLES_PER_UNIT = 1000;
+
+    private static double exactSigmoid(double t) {
+        return 1 / (1 + Math.exp(-t));
+    }
+
+    private static double getMaxError(SigmoidNeuron.Approximation approximation) {
+        double maxError = 0.0;
+        int sampleCount = (int)(2.0 * SAMPLE_RANGE) * SAMPLES_PER_UNIT;
+        for (int i = 0; i <= sampleCount; i++) {
+            double t = (double)i / SAMPLES_PER_UNIT - SAMPLE_RANGE;
+            double error = Math.abs(approximation.sigmoid(t) - exactSigmoid(t));
+            maxError = Math.max(maxError, error);
+        }
+        return maxError;
+    }
+
+    private static void checkEdges(SigmoidNeuron.Approximation approximation, double maxError) {
+        assertEquals(0.5, approximation.sigmoid(0.0), maxError);
+        assertEquals(1.0, approximation.sigmoid(Double.POSITIVE_INFINITY), maxError);
+        assertEquals(0.0, approximation.sigmoid(Double.NEGATIVE_INFINITY), maxError);
+        assertTrue(Double.isNaN(approximation.sigmoid(Double.NaN)));
+    }
+
+    @Test
+    public void testLookupTableError() {
+        double maxError = getMaxError(SigmoidNeuron.Approximation.LOOKUP_TABLE);
+        assertTrue("Max error: " + maxError, maxError <= LOOKUP_TABLE_MAX_ERROR);
+        checkEdges(SigmoidNeuron.Approximation.LOOKUP_TABLE, LOOKUP_TABLE_MAX_ERROR);
+    }
+
+    @Test
+    public void testRationalError() {
+        double maxError = getMaxError(SigmoidNeuron.Approximation.RATIONAL);
+        assertTrue("Max error: " + maxError, maxError <= RATIONAL_MAX_ERROR);
+        checkEdges(SigmoidNeuron.Approximation.RATIONAL, RATIONAL_MAX_ERROR);
+    }
+
+    @Test
+    public void testExactIsUnchanged() {
+        double[] lambdas = {1.0, 0.5, 3.0};
+        for (double lambda: lambdas) {
+            SigmoidNeuron neuron = new SigmoidNeuron(lambda);
+            SigmoidNeuron explicitNeuron = new SigmoidNeuron(lambda, SigmoidNeuron.Approximation.EXACT);
+
+            int sampleCount = (int)(2.0 * SAMPLE_RANGE) * SAMPLES_PER_UNIT;
+            for (int i = 0; i <= sampleCount; i++) {
+                double x = (double)i / SAMPLES_PER_UNIT - SAMPLE_RANGE;
+                double expected = 1 / (1 + Math.exp(-lambda * x));
+
+                assertEquals(expected, neuron.activationFunction(x), 0.0);
+                assertEquals(expected, explicitNeuron.activationFunction(x), 0.0);
+                assertEquals(exactSigmoid(x), SigmoidNeuron.Approximation.EXACT.sigmoid(x), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testApproximationsScaleWithLambda() {
+        double lambda = 2.5;
+        SigmoidNeuron.Approximation[] approximations = {
+            SigmoidNeuron.Approximation.LOOKUP_TABLE,
+            SigmoidNeuron.Approximation.RATIONAL
+        };
+
+        for (SigmoidNeuron.Approximation approximation: approximations) {
+            SigmoidNeuron neuron = new SigmoidNeuron(lambda, approximation);
+            for (int i = -100; i <= 100; i++) {
+                double x = i / 10.0;
+                assertEquals(approximation.sigmoid(lambda * x), neuron.activationFunction(x), 0.0);
+            }
+        }
+    }
+}
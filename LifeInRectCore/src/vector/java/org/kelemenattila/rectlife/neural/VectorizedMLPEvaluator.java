@@ -0,0 +1,320 @@
+package org.kelemenattila.rectlife.neural;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Calculates the outputs of networks using the Java Vector API.
+ * <P>
+ * The weighted sums are calculated by multiplying vectors of weights and
+ * inputs and then summing the lanes of the accumulated products. The
+ * activation functions of {@link SigmoidNeuron}, {@link LinearNeuron} and
+ * {@link InputNeuron} are also applied to a whole layer at once. Other
+ * activation functions are applied one neuron at a time, and so is the
+ * {@link SigmoidNeuron.Approximation#LOOKUP_TABLE LOOKUP_TABLE}
+ * approximation of the sigmoid function, because the table lookups cannot be
+ * vectorized: For such layers only the weighted sums are vectorized, the
+ * activation falls back to the scalar code of {@link SigmoidNeuron}.
+ * Weights stored in {@code float} precision are converted to {@code double}
+ * vectors before the multiplication.
+ * <P>
+ * This class is loaded by {@link MLPTopology} through reflection, so that the
+ * rest of the code does not depend on {@code jdk.incubator.vector}.
+ *
+ * @author Kelemen Attila
+ */
+final class VectorizedMLPEvaluator implements MLPEvaluator {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // Has the same number of lanes as SPECIES, so that float weights can be
+    // converted to a vector of SPECIES.
+    private static final VectorSpecies<Float> FLOAT_SPECIES = VectorSpecies.of(
+            float.class,
+            VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+
+    private static final int ACTIVATION_OTHER = 0;
+    private static final int ACTIVATION_IDENTITY = 1;
+    private static final int ACTIVATION_LINEAR = 2;
+    private static final int ACTIVATION_SIGMOID = 3;
+    private static final int ACTIVATION_RATIONAL_SIGMOID = 4;
+
+    private final MLPTopology topology;
+    private final int[] activationKinds;
+    private final double[] activationParams;
+
+    public VectorizedMLPEvaluator(MLPTopology topology) {
+        this.topology = topology;
+
+        int layerCount = topology.getLayerCount();
+        this.activationKinds = new int[layerCount];
+        this.activationParams = new double[layerCount];
+
+        for (int i = 1; i < layerCount; i++) {
+            Neuron activation = topology.getActivation(i);
+            if (activation instanceof SigmoidNeuron) {
+                SigmoidNeuron sigmoid = (SigmoidNeuron)activation;
+                switch (sigmoid.getApproximation()) {
+                    case EXACT:
+                        activationKinds[i] = ACTIVATION_SIGMOID;
+                        break;
+                    case RATIONAL:
+                        activationKinds[i] = ACTIVATION_RATIONAL_SIGMOID;
+                        break;
+                    default:
+                        // The lookup table is evaluated one neuron at a time.
+                        activationKinds[i] = ACTIVATION_OTHER;
+                        break;
+                }
+                activationParams[i] = sigmoid.getLambda();
+            }
+            else if (activation instanceof LinearNeuron) {
+                activationKinds[i] = ACTIVATION_LINEAR;
+                activationParams[i] = ((LinearNeuron)activation).getMultiplier();
+            }
+            else if (activation instanceof InputNeuron) {
+                activationKinds[i] = ACTIVATION_IDENTITY;
+            }
+            else {
+                activationKinds[i] = ACTIVATION_OTHER;
+            }
+        }
+    }
+
+    @Override
+    public void evaluate(
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+
+        int outputLayerIndex = topology.getLayerCount() - 1;
+        if (outputLayerIndex == 0) {
+            System.arraycopy(inputs, inputOffset + firstOutput, outputs, outputOffset, outputCount);
+            return;
+        }
+
+        double[] layerInputs = inputs;
+        int layerInputOffset = inputOffset;
+        for (int layerIndex = 1; layerIndex < outputLayerIndex; layerIndex++) {
+            double[] layerOutputs = layerBuffers[layerIndex];
+            evaluateLayer(layerIndex, weights,
+                    layerInputs, layerInputOffset,
+                    layerOutputs, 0,
+                    0, topology.getLayerSize(layerIndex));
+
+            layerInputs = layerOutputs;
+            layerInputOffset = 0;
+        }
+
+        evaluateLayer(outputLayerIndex, weights,
+                layerInputs, layerInputOffset,
+                outputs, outputOffset,
+                firstOutput, outputCount);
+    }
+
+    @Override
+    public void evaluate(
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstOutput,
+            int outputCount,
+            double[][] layerBuffers) {
+
+        int outputLayerIndex = topology.getLayerCount() - 1;
+        if (outputLayerIndex == 0) {
+            System.arraycopy(inputs, inputOffset + firstOutput, outputs, outputOffset, outputCount);
+            return;
+        }
+
+        double[] layerInputs = inputs;
+        int layerInputOffset = inputOffset;
+        for (int layerIndex = 1; layerIndex < outputLayerIndex; layerIndex++) {
+            double[] layerOutputs = layerBuffers[layerIndex];
+            evaluateLayer(layerIndex, weights,
+                    layerInputs, layerInputOffset,
+                    layerOutputs, 0,
+                    0, topology.getLayerSize(layerIndex));
+
+            layerInputs = layerOutputs;
+            layerInputOffset = 0;
+        }
+
+        evaluateLayer(outputLayerIndex, weights,
+                layerInputs, layerInputOffset,
+                outputs, outputOffset,
+                firstOutput, outputCount);
+    }
+
+    private void evaluateLayer(
+            int layerIndex,
+            double[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstNeuron,
+            int neuronCount) {
+
+        int prevSize = topology.getLayerSize(layerIndex - 1);
+        int vectorEnd = SPECIES.loopBound(prevSize);
+        int laneCount = SPECIES.length();
+
+        int rowOffset = topology.getWeightOffset(layerIndex) + firstNeuron * (prevSize + 1);
+        for (int i = 0; i < neuronCount; i++) {
+            int inputWeightOffset = rowOffset + 1;
+
+            DoubleVector products = DoubleVector.zero(SPECIES);
+            int j = 0;
+            for (; j < vectorEnd; j += laneCount) {
+                DoubleVector w = DoubleVector.fromArray(SPECIES, weights, inputWeightOffset + j);
+                DoubleVector x = DoubleVector.fromArray(SPECIES, inputs, inputOffset + j);
+                products = products.add(w.mul(x));
+            }
+
+            double sum = weights[rowOffset] * MLPTopology.BIAS_VALUE;
+            sum += products.reduceLanes(VectorOperators.ADD);
+            for (; j < prevSize; j++) {
+                sum += weights[inputWeightOffset + j] * inputs[inputOffset + j];
+            }
+
+            outputs[outputOffset + i] = sum;
+            rowOffset += prevSize + 1;
+        }
+
+        applyActivation(layerIndex, outputs, outputOffset, neuronCount);
+    }
+
+    private void evaluateLayer(
+            int layerIndex,
+            float[] weights,
+            double[] inputs,
+            int inputOffset,
+            double[] outputs,
+            int outputOffset,
+            int firstNeuron,
+            int neuronCount) {
+
+        int prevSize = topology.getLayerSize(layerIndex - 1);
+        int vectorEnd = SPECIES.loopBound(prevSize);
+        int laneCount = SPECIES.length();
+
+        int rowOffset = topology.getWeightOffset(layerIndex) + firstNeuron * (prevSize + 1);
+        for (int i = 0; i < neuronCount; i++) {
+            int inputWeightOffset = rowOffset + 1;
+
+            DoubleVector products = DoubleVector.zero(SPECIES);
+            int j = 0;
+            for (; j < vectorEnd; j += laneCount) {
+                DoubleVector w = (DoubleVector)FloatVector
+                        .fromArray(FLOAT_SPECIES, weights, inputWeightOffset + j)
+                        .convertShape(VectorOperators.F2D, SPECIES, 0);
+                DoubleVector x = DoubleVector.fromArray(SPECIES, inputs, inputOffset + j);
+                products = products.add(w.mul(x));
+            }
+
+            double sum = weights[rowOffset] * MLPTopology.BIAS_VALUE;
+            sum += products.reduceLanes(VectorOperators.ADD);
+            for (; j < prevSize; j++) {
+                sum += weights[inputWeightOffset + j] * inputs[inputOffset + j];
+            }
+
+            outputs[outputOffset + i] = sum;
+            rowOffset += prevSize + 1;
+        }
+
+        applyActivation(layerIndex, outputs, outputOffset, neuronCount);
+    }
+
+    private void applyActivation(int layerIndex, double[] values, int offset, int count) {
+        switch (activationKinds[layerIndex]) {
+            case ACTIVATION_IDENTITY:
+                break;
+            case ACTIVATION_LINEAR:
+                applyLinear(activationParams[layerIndex], values, offset, count);
+                break;
+            case ACTIVATION_SIGMOID:
+                applySigmoid(activationParams[layerIndex], values, offset, count);
+                break;
+            case ACTIVATION_RATIONAL_SIGMOID:
+                applyRationalSigmoid(activationParams[layerIndex], values, offset, count);
+                break;
+            default:
+                Neuron activation = topology.getActivation(layerIndex);
+                int end = offset + count;
+                for (int i = offset; i < end; i++) {
+                    values[i] = activation.activationFunction(values[i]);
+                }
+                break;
+        }
+    }
+
+    private static void applyLinear(double c, double[] values, int offset, int count) {
+        int vectorEnd = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < vectorEnd; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, values, offset + i)
+                    .mul(c)
+                    .intoArray(values, offset + i);
+        }
+        for (; i < count; i++) {
+            values[offset + i] = c * values[offset + i];
+        }
+    }
+
+    private static void applySigmoid(double lambda, double[] values, int offset, int count) {
+        // 1 / (1 + e^(-lambda * x))
+        double negLambda = -lambda;
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        int vectorEnd = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < vectorEnd; i += SPECIES.length()) {
+            DoubleVector exp = DoubleVector.fromArray(SPECIES, values, offset + i)
+                    .mul(negLambda)
+                    .lanewise(VectorOperators.EXP);
+            one.div(exp.add(1.0)).intoArray(values, offset + i);
+        }
+        for (; i < count; i++) {
+            values[offset + i] = 1 / (1 + Math.exp(negLambda * values[offset + i]));
+        }
+    }
+
+    private static void applyRationalSigmoid(double lambda, double[] values, int offset, int count) {
+        // See SigmoidNeuron.rationalSigmoid
+        double limit = SigmoidNeuron.RATIONAL_TANH_LIMIT;
+        int vectorEnd = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < vectorEnd; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, values, offset + i)
+                    .mul(lambda)
+                    .mul(0.5)
+                    .max(-limit)
+                    .min(limit);
+
+            DoubleVector x2 = x.mul(x);
+            DoubleVector numerator = x2.add(378.0)
+                    .mul(x2).add(17325.0)
+                    .mul(x2).add(135135.0)
+                    .mul(x);
+            DoubleVector denominator = x2.mul(28.0).add(3150.0)
+                    .mul(x2).add(62370.0)
+                    .mul(x2).add(135135.0);
+
+            numerator.div(denominator)
+                    .mul(0.5)
+                    .add(0.5)
+                    .intoArray(values, offset + i);
+        }
+        for (; i < count; i++) {
+            values[offset + i] = SigmoidNeuron.rationalSigmoid(lambda * values[offset + i]);
+        }
+    }
+}
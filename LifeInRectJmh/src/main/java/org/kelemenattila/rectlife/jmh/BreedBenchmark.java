@@ -0,0 +1,62 @@
+package org.kelemenattila.rectlife.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.kelemenattila.rectlife.DnsCombiner;
+import org.kelemenattila.rectlife.Entity;
+import org.kelemenattila.rectlife.EntityAction;
+import org.kelemenattila.rectlife.NetworkSettings;
+import org.kelemenattila.rectlife.StandardGeneticCombiner;
+import org.kelemenattila.rectlife.neural.MLPTopology;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures breeding a new entity from two parents with the
+ * {@link StandardGeneticCombiner}.
+ *
+ * @author Kelemen Attila
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BreedBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"0.001", "0.1"})
+    public double mutateRate;
+
+    private Entity<EntityAction> parent1;
+    private Entity<EntityAction> parent2;
+    private DnsCombiner combiner;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MLPTopology topology = Entity.createTopology(8, 10, EntityAction.values().length, NetworkSettings.DEFAULT);
+        EntityAction[] actions = EntityAction.values();
+
+        random = new Random(SEED);
+        parent1 = new Entity<>(topology, actions, random);
+        parent2 = new Entity<>(topology, actions, random);
+        combiner = new StandardGeneticCombiner(mutateRate);
+    }
+
+    @Benchmark
+    public Entity<EntityAction> breed() {
+        return parent1.breed(parent2, combiner, random);
+    }
+}
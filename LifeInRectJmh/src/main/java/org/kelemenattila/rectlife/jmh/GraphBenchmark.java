@@ -0,0 +1,46 @@
+package org.kelemenattila.rectlife.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures calculating the graphs of the behaviour of the population.
+ *
+ * @author Kelemen Attila
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GraphBenchmark {
+    @Param({"10", "50", "200"})
+    public int graphDetail;
+
+    private double[] racismGraph;
+    private double[] doNothingGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        racismGraph = new double[graphDetail];
+        doNothingGraph = new double[graphDetail];
+    }
+
+    @Benchmark
+    public double[] getGraphs(WorldState state) {
+        state.world.getGraphs(racismGraph, doNothingGraph);
+        return racismGraph;
+    }
+}
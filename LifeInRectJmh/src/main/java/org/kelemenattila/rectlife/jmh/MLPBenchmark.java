@@ -0,0 +1,152 @@
+package org.kelemenattila.rectlife.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.kelemenattila.rectlife.Entity;
+import org.kelemenattila.rectlife.EntityAction;
+import org.kelemenattila.rectlife.NetworkSettings;
+import org.kelemenattila.rectlife.neural.GenePrecision;
+import org.kelemenattila.rectlife.neural.MLPEvaluatorType;
+import org.kelemenattila.rectlife.neural.MLPTopology;
+import org.kelemenattila.rectlife.neural.SigmoidNeuron;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures evaluating a batch of networks having the topology of the
+ * entities of the world, the same way as the entities evaluate them: Through
+ * {@link MLPTopology#evaluate(double[], double[], int, double[], int, int, int) MLPTopology.evaluate}
+ * and by thinking in an {@link Entity.BatchThinker}.
+ * <P>
+ * The benchmark JVM is started with the {@code jdk.incubator.vector} module,
+ * so that the {@link MLPEvaluatorType#VECTORIZED vectorized} evaluator is
+ * available. Therefore this benchmark requires JDK 16 or later.
+ *
+ * @author Kelemen Attila
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class MLPBenchmark {
+    private static final long SEED = 42;
+    private static final int VIEW_INPUT_COUNT = 8;
+    private static final int NEURON_COUNT = 10;
+
+    @Param({"1", "256"})
+    public int batchSize;
+
+    @Param({"SCALAR", "VECTORIZED", "GENERATED"})
+    public MLPEvaluatorType evaluatorType;
+
+    @Param({"DOUBLE", "FLOAT"})
+    public GenePrecision genePrecision;
+
+    @Param({"EXACT", "LOOKUP_TABLE", "RATIONAL"})
+    public SigmoidNeuron.Approximation sigmoidApproximation;
+
+    private MLPTopology topology;
+    // Exactly one of these arrays is not null, depending on genePrecision.
+    private double[][] genes;
+    private float[][] floatGenes;
+    private double[] inputs;
+    private double[] outputs;
+
+    private Entity<EntityAction>[] entities;
+    private double[] neighbours;
+    private Entity.BatchThinker<EntityAction> thinker;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        NetworkSettings settings = new NetworkSettings(evaluatorType, genePrecision, sigmoidApproximation);
+        EntityAction[] actions = EntityAction.values();
+        topology = Entity.createTopology(VIEW_INPUT_COUNT, NEURON_COUNT, actions.length, settings);
+        // Do not silently measure the scalar evaluator instead.
+        if (topology.getEvaluatorType() != evaluatorType) {
+            throw new IllegalStateException("The " + evaluatorType + " evaluator is not available,"
+                    + " the topology uses " + topology.getEvaluatorType());
+        }
+        Random random = new Random(SEED);
+
+        int geneCount = topology.getGeneCount();
+        if (genePrecision == GenePrecision.FLOAT) {
+            floatGenes = new float[batchSize][geneCount];
+            for (float[] networkGenes: floatGenes) {
+                for (int i = 0; i < networkGenes.length; i++) {
+                    networkGenes[i] = (float)(2.0 * random.nextDouble() - 1.0);
+                }
+            }
+        }
+        else {
+            genes = new double[batchSize][geneCount];
+            for (double[] networkGenes: genes) {
+                for (int i = 0; i < networkGenes.length; i++) {
+                    networkGenes[i] = 2.0 * random.nextDouble() - 1.0;
+                }
+            }
+        }
+
+        inputs = new double[batchSize * topology.getInputCount()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = 2.0 * random.nextDouble() - 1.0;
+        }
+        outputs = new double[batchSize * topology.getOutputCount()];
+
+        entities = (Entity<EntityAction>[])new Entity<?>[batchSize];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = new Entity<>(topology, actions, random);
+        }
+        neighbours = new double[topology.getInputCount() - 1];
+        for (int i = 0; i < neighbours.length; i++) {
+            neighbours[i] = 2.0 * random.nextDouble() - 1.0;
+        }
+        thinker = new Entity.BatchThinker<>(topology, batchSize);
+    }
+
+    @Benchmark
+    public double[] evaluate() {
+        int inputCount = topology.getInputCount();
+        int outputCount = topology.getOutputCount();
+
+        int inputOffset = 0;
+        int outputOffset = 0;
+        for (int i = 0; i < batchSize; i++) {
+            if (floatGenes != null) {
+                topology.evaluate(floatGenes[i], inputs, inputOffset, outputs, outputOffset, 0, outputCount);
+            }
+            else {
+                topology.evaluate(genes[i], inputs, inputOffset, outputs, outputOffset, 0, outputCount);
+            }
+            inputOffset += inputCount;
+            outputOffset += outputCount;
+        }
+        return outputs;
+    }
+
+    /**
+     * Measures the cost of the entities choosing their actions, including
+     * the evaluation of their networks.
+     */
+    @Benchmark
+    public EntityAction think() {
+        thinker.clear();
+        for (Entity<EntityAction> entity: entities) {
+            thinker.add(entity, neighbours);
+        }
+        thinker.think();
+        return thinker.getAction(batchSize - 1);
+    }
+}
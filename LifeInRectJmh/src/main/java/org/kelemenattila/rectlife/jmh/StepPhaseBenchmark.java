@@ -0,0 +1,67 @@
+package org.kelemenattila.rectlife.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.kelemenattila.rectlife.StepPhase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single phase of the steps of the world. The other phases are
+ * run before each invocation (outside the measurement), so the measured phase
+ * always sees the state it sees in {@code stepWorld}.
+ * <P>
+ * The phases are measured with different tile shapes: {@code WxH} tiles of
+ * {@code W} columns and {@code H} rows, or {@code ROWS} processing whole rows
+ * in row-major bands of {@value #ROW_BAND_HEIGHT} rows.
+ *
+ * @author Kelemen Attila
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StepPhaseBenchmark {
+    private static final String ROW_MAJOR_SHAPE = "ROWS";
+    private static final int ROW_BAND_HEIGHT = 16;
+
+    @Param({"CHOOSE_ACTIONS", "RESOLVE_FIGHTS", "RESOLVE_ACCIDENTS", "BREED"})
+    public StepPhase phase;
+
+    @Param({"64x16", "128x32", ROW_MAJOR_SHAPE})
+    public String tileShape;
+
+    @Setup(Level.Trial)
+    public void setUp(WorldState state) {
+        if (ROW_MAJOR_SHAPE.equals(tileShape)) {
+            state.world.setTileSize(state.size, ROW_BAND_HEIGHT);
+        }
+        else {
+            String[] size = tileShape.split("x");
+            state.world.setTileSize(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void runPreviousPhases(WorldState state) {
+        while (state.world.getNextPhase() != phase) {
+            state.world.runNextPhase();
+        }
+    }
+
+    @Benchmark
+    public void runPhase(WorldState state) {
+        state.world.runNextPhase();
+    }
+}
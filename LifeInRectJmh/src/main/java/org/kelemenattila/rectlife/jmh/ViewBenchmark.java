@@ -0,0 +1,33 @@
+package org.kelemenattila.rectlife.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.kelemenattila.rectlife.EntityWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering the views of the world.
+ *
+ * @author Kelemen Attila
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ViewBenchmark {
+    @Benchmark
+    public EntityWorld.WorldView createAppearanceView(WorldState state) {
+        return state.world.createAppearanceView();
+    }
+
+    @Benchmark
+    public EntityWorld.WorldView createAgeView(WorldState state) {
+        return state.world.createAgeView();
+    }
+}
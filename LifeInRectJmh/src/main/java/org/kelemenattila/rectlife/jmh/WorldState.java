@@ -0,0 +1,49 @@
+package org.kelemenattila.rectlife.jmh;
+
+import java.util.concurrent.ForkJoinPool;
+import org.kelemenattila.rectlife.EntityWorld;
+import org.kelemenattila.rectlife.NetworkSettings;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A seeded square world shared by the benchmarks, stepped a few times so
+ * that the benchmarks do not measure the randomly filled initial board.
+ *
+ * @author Kelemen Attila
+ */
+@State(Scope.Benchmark)
+public class WorldState {
+    private static final long SEED = 42;
+    private static final int INITIAL_STEP_COUNT = 20;
+    private static final double ACCIDENT_RATE = 0.001;
+
+    @Param({"100", "400"})
+    public int size;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    public ForkJoinPool pool;
+    public EntityWorld world;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        world = new EntityWorld(pool, size, size, NetworkSettings.DEFAULT, SEED);
+        world.setAccidentRate(ACCIDENT_RATE);
+
+        for (int i = 0; i < INITIAL_STEP_COUNT; i++) {
+            world.stepWorld();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+}